@@ -15,17 +15,34 @@ package org.coursera.android.shift;
 
 class BooleanPreference extends ShiftPref<Boolean> {
 
-    public BooleanPreference(ShiftPersistenceManager persistenceManager, String key, Boolean defaultValue) {
-        super(persistenceManager, key, defaultValue, Boolean.class);
+    public BooleanPreference(ShiftPersistenceManager persistenceManager,
+                             ShiftValueCache cache,
+                             String key,
+                             Boolean defaultValue) {
+        super(persistenceManager, cache, key, defaultValue, Boolean.class);
     }
 
     @Override
     public Boolean getValue() {
-        return PERSISTENCE.getBoolean(KEY, DEFAULT_VALUE);
+        return getBooleanValue();
+    }
+
+    boolean getBooleanValue() {
+        return CACHE.getBoolean(SLOT);
+    }
+
+    @Override
+    void put(ShiftStore.Editor editor, Boolean value) {
+        editor.putBoolean(KEY, value);
+    }
+
+    @Override
+    void cache(Boolean value) {
+        CACHE.setBoolean(SLOT, value);
     }
 
     @Override
-    public void setValue(Boolean value) {
-        PERSISTENCE.putBoolean(KEY, value);
+    void load() {
+        CACHE.setBoolean(SLOT, PERSISTENCE.getBoolean(KEY, DEFAULT_VALUE));
     }
 }
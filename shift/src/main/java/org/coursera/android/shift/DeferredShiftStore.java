@@ -0,0 +1,228 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stands in for a {@link ShiftStore} that is still being loaded on another thread.
+ *
+ * Until {@link #setStore(ShiftStore)} is called, reads only see the changes made through this
+ * store and otherwise return defaults. Changes are kept in memory and written to the real store,
+ * in one batch, once it is set. After that every call goes straight to the real store.
+ */
+class DeferredShiftStore implements ShiftStore {
+
+    // Marks a key removed before the real store was loaded
+    private static final Object REMOVED = new Object();
+
+    private volatile ShiftStore mStore;
+    private final Map<String, Object> mPending = new HashMap<>();
+
+    /**
+     * Writes the changes made so far to the given store and sends everything to it from now on.
+     */
+    synchronized void setStore(ShiftStore store) {
+        if (!mPending.isEmpty()) {
+            Editor editor = store.edit();
+            for (Map.Entry<String, Object> entry : mPending.entrySet()) {
+                put(editor, entry.getKey(), entry.getValue());
+            }
+            editor.apply();
+            mPending.clear();
+        }
+        mStore = store;
+    }
+
+    @Override
+    public void load() {
+        ShiftStore store = mStore;
+        if (store != null) {
+            store.load();
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        ShiftStore store = mStore;
+        if (store != null) {
+            return store.exists(key);
+        }
+        synchronized (this) {
+            if (mStore != null) {
+                return mStore.exists(key);
+            }
+            Object value = mPending.get(key);
+            return value != null && value != REMOVED;
+        }
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        ShiftStore store = mStore;
+        if (store != null) {
+            return store.getBoolean(key, defaultValue);
+        }
+        synchronized (this) {
+            if (mStore != null) {
+                return mStore.getBoolean(key, defaultValue);
+            }
+            Object value = mPending.get(key);
+            return value == null || value == REMOVED ? defaultValue : (Boolean) value;
+        }
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        ShiftStore store = mStore;
+        if (store != null) {
+            return store.getInt(key, defaultValue);
+        }
+        synchronized (this) {
+            if (mStore != null) {
+                return mStore.getInt(key, defaultValue);
+            }
+            Object value = mPending.get(key);
+            return value == null || value == REMOVED ? defaultValue : (Integer) value;
+        }
+    }
+
+    @Override
+    public float getFloat(String key, float defaultValue) {
+        ShiftStore store = mStore;
+        if (store != null) {
+            return store.getFloat(key, defaultValue);
+        }
+        synchronized (this) {
+            if (mStore != null) {
+                return mStore.getFloat(key, defaultValue);
+            }
+            Object value = mPending.get(key);
+            return value == null || value == REMOVED ? defaultValue : (Float) value;
+        }
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        ShiftStore store = mStore;
+        if (store != null) {
+            return store.getString(key, defaultValue);
+        }
+        synchronized (this) {
+            if (mStore != null) {
+                return mStore.getString(key, defaultValue);
+            }
+            Object value = mPending.get(key);
+            return value == null || value == REMOVED ? defaultValue : (String) value;
+        }
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        ShiftStore store = mStore;
+        if (store != null) {
+            return store.getAll();
+        }
+        synchronized (this) {
+            if (mStore != null) {
+                return mStore.getAll();
+            }
+            Map<String, Object> all = new HashMap<>();
+            for (Map.Entry<String, Object> entry : mPending.entrySet()) {
+                if (entry.getValue() != REMOVED) {
+                    all.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return all;
+        }
+    }
+
+    @Override
+    public Editor edit() {
+        ShiftStore store = mStore;
+        return store != null ? store.edit() : new DeferredEditor();
+    }
+
+    private static void put(Editor editor, String key, Object value) {
+        if (value == REMOVED) {
+            editor.remove(key);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else {
+            editor.putString(key, (String) value);
+        }
+    }
+
+    private class DeferredEditor implements Editor {
+
+        private final List<String> mKeys = new ArrayList<>();
+        private final List<Object> mValues = new ArrayList<>();
+
+        private Editor stage(String key, Object value) {
+            mKeys.add(key);
+            mValues.add(value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return stage(key, value == null ? REMOVED : value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return stage(key, REMOVED);
+        }
+
+        @Override
+        public void apply() {
+            synchronized (DeferredShiftStore.this) {
+                if (mStore != null) {
+                    // The real store was set while this editor was open
+                    Editor editor = mStore.edit();
+                    for (int i = 0; i < mKeys.size(); i++) {
+                        put(editor, mKeys.get(i), mValues.get(i));
+                    }
+                    editor.apply();
+                    return;
+                }
+                for (int i = 0; i < mKeys.size(); i++) {
+                    mPending.put(mKeys.get(i), mValues.get(i));
+                }
+            }
+        }
+    }
+}
@@ -15,17 +15,34 @@ package org.coursera.android.shift;
 
 class FloatPreference extends ShiftPref<Float> {
 
-    public FloatPreference(ShiftPersistenceManager persistenceManager, String key, Float defaultValue) {
-        super(persistenceManager, key, defaultValue, Float.class);
+    public FloatPreference(ShiftPersistenceManager persistenceManager,
+                           ShiftValueCache cache,
+                           String key,
+                           Float defaultValue) {
+        super(persistenceManager, cache, key, defaultValue, Float.class);
     }
 
     @Override
     Float getValue() {
-        return PERSISTENCE.getFloat(KEY, DEFAULT_VALUE);
+        return getFloatValue();
+    }
+
+    float getFloatValue() {
+        return CACHE.getFloat(SLOT);
+    }
+
+    @Override
+    void put(ShiftStore.Editor editor, Float value) {
+        editor.putFloat(KEY, value);
+    }
+
+    @Override
+    void cache(Float value) {
+        CACHE.setFloat(SLOT, value);
     }
 
     @Override
-    void setValue(Float value) {
-        PERSISTENCE.putFloat(KEY, value);
+    void load() {
+        CACHE.setFloat(SLOT, PERSISTENCE.getFloat(KEY, DEFAULT_VALUE));
     }
 }
@@ -15,17 +15,34 @@ package org.coursera.android.shift;
 
 class IntPreference extends ShiftPref<Integer> {
 
-    public IntPreference(ShiftPersistenceManager persistenceManager, String key, Integer defaultValue) {
-        super(persistenceManager, key, defaultValue, Integer.class);
+    public IntPreference(ShiftPersistenceManager persistenceManager,
+                         ShiftValueCache cache,
+                         String key,
+                         Integer defaultValue) {
+        super(persistenceManager, cache, key, defaultValue, Integer.class);
     }
 
     @Override
     public Integer getValue() {
-        return PERSISTENCE.getInt(KEY, DEFAULT_VALUE);
+        return getIntValue();
+    }
+
+    int getIntValue() {
+        return CACHE.getInt(SLOT);
+    }
+
+    @Override
+    void put(ShiftStore.Editor editor, Integer value) {
+        editor.putInt(KEY, value);
+    }
+
+    @Override
+    void cache(Integer value) {
+        CACHE.setInt(SLOT, value);
     }
 
     @Override
-    public void setValue(Integer value) {
-        PERSISTENCE.putInt(KEY, value);
+    void load() {
+        CACHE.setInt(SLOT, PERSISTENCE.getInt(KEY, DEFAULT_VALUE));
     }
 }
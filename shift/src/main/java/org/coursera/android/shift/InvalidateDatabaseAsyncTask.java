@@ -0,0 +1,48 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.os.AsyncTask;
+import android.util.Log;
+
+import java.util.Set;
+
+/**
+ * Removes the values of ShiftValues that are no longer registered, off the main thread.
+ * See {@link ShiftPersistenceManager#invalidateDatabase(Set)}
+ */
+class InvalidateDatabaseAsyncTask
+        extends AsyncTask<Set<String>, Void, ShiftPersistenceManager.InvalidationResult> {
+
+    private static final String TAG = InvalidateDatabaseAsyncTask.class.getCanonicalName();
+
+    private final ShiftPersistenceManager mPersistenceManager;
+
+    InvalidateDatabaseAsyncTask(ShiftPersistenceManager persistenceManager) {
+        mPersistenceManager = persistenceManager;
+    }
+
+    @Override
+    protected ShiftPersistenceManager.InvalidationResult doInBackground(Set<String>... keysToKeep) {
+        return mPersistenceManager.invalidateDatabase(keysToKeep[0]);
+    }
+
+    @Override
+    protected void onPostExecute(ShiftPersistenceManager.InvalidationResult result) {
+        if (result != null) {
+            Log.i(TAG, "Removed " + result.KEYS_REMOVED + " unused ShiftValues, reclaiming about "
+                    + result.BYTES_RECLAIMED + " bytes");
+        }
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link ShiftStore} that appends every change to a log file and keeps all values in memory.
+ *
+ * Writing a value costs one small record no matter how many values are stored, which suits
+ * editors that save on every keystroke. Like SharedPreferences.apply(), changes are visible as
+ * soon as they are applied and written to the log on a background thread, in the order they
+ * were applied. The changes from one {@link Editor} are written as a batch that is replayed
+ * whole or not at all when the store is opened. Once the log is mostly superseded records it is
+ * rewritten, on the same background thread, with one record per live value.
+ *
+ * The first time the store is created from a {@link Context}, values previously saved by
+ * {@link SharedPreferencesShiftStore} are imported.
+ */
+public class JournalShiftStore implements ShiftStore {
+
+    private static final String TAG = JournalShiftStore.class.getCanonicalName();
+
+    static final String FILE_NAME = "org.coursera.android.shift.SHIFT_JOURNAL";
+    // Where a log this version doesn't understand is moved to, rather than losing it
+    static final String UNRECOGNIZED_SUFFIX = ".unrecognized";
+
+    private static final int MAGIC = 0x53484a4c;
+    // Version 1 logs had no batches, every record stood on its own
+    private static final int VERSION_UNBATCHED = 1;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int BATCH_HEADER_SIZE = 4;
+
+    // Compact once the log is past this size and at least twice the size of a compacted log
+    static final int DEFAULT_COMPACTION_THRESHOLD = 64 * 1024;
+
+    private static final byte TYPE_REMOVE = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_FLOAT = 3;
+    private static final byte TYPE_STRING = 4;
+
+    private final File mFile;
+    private final int mCompactionThreshold;
+    // Runs writes and compactions one at a time, in order
+    private final Executor mExecutor;
+    private final Map<String, Object> mValues = new HashMap<>();
+    private long mLiveSize;
+
+    // Only used on mExecutor once the store is open
+    private FileOutputStream mOut;
+    private volatile long mLogSize;
+
+    public JournalShiftStore(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME), context, DEFAULT_COMPACTION_THRESHOLD,
+                newWriteExecutor());
+    }
+
+    public JournalShiftStore(File file) {
+        this(file, null, DEFAULT_COMPACTION_THRESHOLD, newWriteExecutor());
+    }
+
+    JournalShiftStore(File file, Context migrateFrom, int compactionThreshold, Executor executor) {
+        mFile = file;
+        mCompactionThreshold = compactionThreshold;
+        mExecutor = executor;
+        boolean isNewFile = !file.exists();
+        try {
+            int version = replay();
+            if (version == VERSION_UNBATCHED) {
+                mLogSize = rewrite(new HashMap<>(mValues));
+            }
+            mOut = new FileOutputStream(file, true);
+            if (mLogSize == 0) {
+                mOut.write(header());
+                mLogSize = HEADER_SIZE;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open Shift journal: " + file, e);
+        }
+        if (isNewFile && migrateFrom != null) {
+            ShiftStoreMigration.importSharedPreferences(migrateFrom, this);
+        }
+    }
+
+    private static Executor newWriteExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ShiftJournal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void load() {
+        // Everything is read when the store is created
+    }
+
+    @Override
+    public synchronized boolean exists(String key) {
+        return mValues.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defaultValue) {
+        Boolean value = (Boolean) mValues.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defaultValue) {
+        Integer value = (Integer) mValues.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defaultValue) {
+        Float value = (Float) mValues.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public synchronized String getString(String key, String defaultValue) {
+        String value = (String) mValues.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(mValues);
+    }
+
+    @Override
+    public Editor edit() {
+        return new JournalEditor();
+    }
+
+    /**
+     * Loads every value from the log. A batch cut short by the process dying mid-write is
+     * dropped along with anything after it. A log with a header this version doesn't recognize
+     * is moved aside, untouched.
+     *
+     * @return The version of the log, or 0 if there was none
+     */
+    private int replay() throws IOException {
+        if (!mFile.exists()) {
+            return 0;
+        }
+        int version = 0;
+        long validLength = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        try {
+            if (in.readInt() == MAGIC) {
+                version = in.readInt();
+            }
+            if (version == VERSION || version == VERSION_UNBATCHED) {
+                validLength = HEADER_SIZE;
+                while (true) {
+                    validLength += readBatch(in, version);
+                }
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            // End of the log, or a torn batch at the end of it
+        } finally {
+            in.close();
+        }
+        if (validLength == 0 && mFile.length() >= HEADER_SIZE) {
+            File unrecognized = new File(mFile.getPath() + UNRECOGNIZED_SUFFIX);
+            Log.e(TAG, "Unrecognized Shift journal, moving it to " + unrecognized);
+            unrecognized.delete();
+            if (!mFile.renameTo(unrecognized)) {
+                throw new IOException("Unable to move aside " + mFile);
+            }
+            return 0;
+        }
+        if (validLength < mFile.length()) {
+            RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+            try {
+                file.setLength(validLength);
+            } finally {
+                file.close();
+            }
+        }
+        mLogSize = validLength;
+        mLiveSize = HEADER_SIZE + BATCH_HEADER_SIZE + snapshotSize();
+        return version;
+    }
+
+    /**
+     * Reads a whole batch before applying any of it.
+     *
+     * @return The size of the batch in bytes
+     */
+    private long readBatch(DataInputStream in, int version) throws IOException {
+        int count = version == VERSION ? in.readInt() : 1;
+        if (count < 0) {
+            throw new EOFException("Corrupt batch of " + count + " records");
+        }
+        long size = version == VERSION ? BATCH_HEADER_SIZE : 0;
+        List<String> keys = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            String key = in.readUTF();
+            Object value = readValue(in, type);
+            keys.add(key);
+            values.add(value);
+            size += recordSize(key, value);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (values.get(i) == null) {
+                mValues.remove(keys.get(i));
+            } else {
+                mValues.put(keys.get(i), values.get(i));
+            }
+        }
+        return size;
+    }
+
+    private static Object readValue(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case TYPE_REMOVE:
+                return null;
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_STRING:
+                return readString(in);
+            default:
+                throw new EOFException("Unknown record type " + type);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new EOFException("Truncated string of length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static byte[] header() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(DataOutputStream out, String key, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_REMOVE);
+            out.writeUTF(key);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeUTF(key);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeUTF(key);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeUTF(key);
+            out.writeFloat((Float) value);
+        } else {
+            byte[] bytes = ((String) value).getBytes("UTF-8");
+            out.writeByte(TYPE_STRING);
+            out.writeUTF(key);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return The number of bytes {@link #writeRecord} writes for this key and value
+     */
+    private static int recordSize(String key, Object value) throws IOException {
+        int size = 1 + 2 + modifiedUtf8Length(key);
+        if (value instanceof Boolean) {
+            size += 1;
+        } else if (value instanceof Integer || value instanceof Float) {
+            size += 4;
+        } else if (value instanceof String) {
+            size += 4 + ((String) value).getBytes("UTF-8").length;
+        }
+        return size;
+    }
+
+    // The length of the encoding DataOutputStream.writeUTF uses, without its length prefix
+    private static int modifiedUtf8Length(String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private long snapshotSize() throws IOException {
+        long size = 0;
+        for (Map.Entry<String, Object> entry : mValues.entrySet()) {
+            size += recordSize(entry.getKey(), entry.getValue());
+        }
+        return size;
+    }
+
+    /**
+     * Applies the changes in memory and queues them to be written to the log as one batch.
+     */
+    private synchronized void apply(List<String> keys, List<Object> values) throws IOException {
+        // Encoded first, so that a key that can't be written doesn't leave the batch half applied
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            writeRecord(out, keys.get(i), values.get(i));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            Object value = values.get(i);
+            Object previous = value == null ? mValues.remove(key) : mValues.put(key, value);
+            if (previous != null) {
+                mLiveSize -= recordSize(key, previous);
+            }
+            if (value != null) {
+                mLiveSize += recordSize(key, value);
+            }
+        }
+        final byte[] batch = bytes.toByteArray();
+        // Queued while holding the lock, so batches are written in the order they were applied
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(batch);
+            }
+        });
+    }
+
+    private void write(byte[] batch) {
+        try {
+            // One write per batch so a batch is never interleaved with another
+            mOut.write(batch);
+            mLogSize += batch.length;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write to Shift journal", e);
+            return;
+        }
+        long liveSize;
+        synchronized (this) {
+            liveSize = mLiveSize;
+        }
+        if (mLogSize > mCompactionThreshold && mLogSize > 2 * liveSize) {
+            compact();
+        }
+    }
+
+    /**
+     * Replaces the log with one record per current value. The snapshot may already include
+     * batches that are still queued; writing them again afterwards changes nothing.
+     */
+    private void compact() {
+        Map<String, Object> snapshot;
+        synchronized (this) {
+            snapshot = new HashMap<>(mValues);
+        }
+        try {
+            long size = rewrite(snapshot);
+            mOut.close();
+            mOut = new FileOutputStream(mFile, true);
+            mLogSize = size;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to compact Shift journal", e);
+        }
+    }
+
+    /**
+     * Writes the values as a single batch to a new log, then renames it over the old one.
+     *
+     * @return The size of the new log
+     */
+    private long rewrite(Map<String, Object> values) throws IOException {
+        File compacted = new File(mFile.getPath() + ".compact");
+        FileOutputStream out = new FileOutputStream(compacted);
+        long size;
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.write(header());
+            data.writeInt(values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                writeRecord(data, entry.getKey(), entry.getValue());
+            }
+            data.flush();
+            out.getFD().sync();
+            size = out.getChannel().size();
+        } catch (IOException e) {
+            out.close();
+            compacted.delete();
+            throw e;
+        }
+        out.close();
+        if (!compacted.renameTo(mFile)) {
+            compacted.delete();
+            throw new IOException("Unable to replace " + mFile);
+        }
+        return size;
+    }
+
+    long getLogSize() {
+        return mLogSize;
+    }
+
+    private class JournalEditor implements Editor {
+
+        private final List<String> mKeys = new ArrayList<>();
+        // null marks a removal
+        private final List<Object> mValues = new ArrayList<>();
+
+        private Editor stage(String key, Object value) {
+            mKeys.add(key);
+            mValues.add(value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return stage(key, null);
+        }
+
+        @Override
+        public void apply() {
+            try {
+                JournalShiftStore.this.apply(mKeys, mValues);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write to Shift journal", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ShiftStore} that keeps its values in a memory-mapped file.
+ *
+ * A write only touches the bytes of the values that changed and nothing is parsed when the
+ * store is opened other than a scan of the record headers. Writes land in the page cache as soon
+ * as they are made and survive the process being killed.
+ *
+ * File layout: a header (magic, version, end of the last record) followed by records of
+ * [status, type, key length, value capacity, value length, key, value].
+ * Booleans, ints and floats are rewritten in place with a single store, so they can't be torn.
+ * Any other change appends a complete new record before the old one is marked dead, so the
+ * file always holds either the old or the new value. Dead records are compacted away, into a
+ * new file that replaces the old one, when the store is opened or when it would otherwise need
+ * to grow.
+ *
+ * The first time the store is created from a {@link Context}, values previously saved by
+ * {@link SharedPreferencesShiftStore} are imported.
+ */
+public class MappedFileShiftStore implements ShiftStore {
+
+    private static final String TAG = MappedFileShiftStore.class.getCanonicalName();
+
+    static final String FILE_NAME = "org.coursera.android.shift.SHIFT_STORE";
+
+    private static final int MAGIC = 0x53484654;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int END_POSITION = 8;
+    private static final int INITIAL_SIZE = 16 * 1024;
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private static final byte STATUS_DEAD = 0;
+    private static final byte STATUS_LIVE = 1;
+
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_FLOAT = 3;
+    private static final byte TYPE_STRING = 4;
+
+    // Offsets within a record
+    private static final int RECORD_TYPE = 1;
+    private static final int RECORD_KEY_LENGTH = 2;
+    private static final int RECORD_CAPACITY = 6;
+    private static final int RECORD_VALUE_LENGTH = 10;
+    private static final int RECORD_HEADER_SIZE = 14;
+
+    private final File mFile;
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    private int mEnd;
+    private int mDeadBytes;
+    private final Map<String, Integer> mIndex = new HashMap<>();
+
+    public MappedFileShiftStore(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME), context);
+    }
+
+    public MappedFileShiftStore(File file) {
+        this(file, null);
+    }
+
+    private MappedFileShiftStore(File file, Context migrateFrom) {
+        mFile = file;
+        boolean isNewFile = !file.exists();
+        // Left behind by a compaction that didn't finish, the store itself is intact
+        new File(file.getPath() + COMPACT_SUFFIX).delete();
+        try {
+            mChannel = new RandomAccessFile(file, "rw").getChannel();
+            long size = mChannel.size();
+            mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_SIZE));
+            if (size < HEADER_SIZE || mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+                if (!isNewFile) {
+                    Log.e(TAG, "Unrecognized Shift store, starting with an empty store: " + file);
+                }
+                mBuffer.putInt(0, MAGIC);
+                mBuffer.putInt(4, VERSION);
+                setEnd(HEADER_SIZE);
+            } else {
+                scan();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open Shift store: " + file, e);
+        }
+        if (isNewFile && migrateFrom != null) {
+            ShiftStoreMigration.importSharedPreferences(migrateFrom, this);
+        }
+    }
+
+    @Override
+    public void load() {
+        // Everything is read when the store is created
+    }
+
+    @Override
+    public synchronized boolean exists(String key) {
+        return mIndex.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defaultValue) {
+        Integer position = find(key, TYPE_BOOLEAN);
+        return position == null ? defaultValue : mBuffer.get(valuePosition(position)) != 0;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defaultValue) {
+        Integer position = find(key, TYPE_INT);
+        return position == null ? defaultValue : mBuffer.getInt(valuePosition(position));
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defaultValue) {
+        Integer position = find(key, TYPE_FLOAT);
+        return position == null ? defaultValue : mBuffer.getFloat(valuePosition(position));
+    }
+
+    @Override
+    public synchronized String getString(String key, String defaultValue) {
+        Integer position = find(key, TYPE_STRING);
+        return position == null ? defaultValue : readString(position);
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        Map<String, Object> all = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : mIndex.entrySet()) {
+            int position = entry.getValue();
+            int valuePosition = valuePosition(position);
+            switch (mBuffer.get(position + RECORD_TYPE)) {
+                case TYPE_BOOLEAN:
+                    all.put(entry.getKey(), mBuffer.get(valuePosition) != 0);
+                    break;
+                case TYPE_INT:
+                    all.put(entry.getKey(), mBuffer.getInt(valuePosition));
+                    break;
+                case TYPE_FLOAT:
+                    all.put(entry.getKey(), mBuffer.getFloat(valuePosition));
+                    break;
+                case TYPE_STRING:
+                    all.put(entry.getKey(), readString(position));
+                    break;
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public Editor edit() {
+        return new MappedFileEditor();
+    }
+
+    private Integer find(String key, byte type) {
+        Integer position = mIndex.get(key);
+        if (position != null && mBuffer.get(position + RECORD_TYPE) != type) {
+            throw new ClassCastException("Value stored for " + key + " has a different type");
+        }
+        return position;
+    }
+
+    private int recordSize(int position) {
+        return RECORD_HEADER_SIZE + mBuffer.getInt(position + RECORD_KEY_LENGTH)
+                + mBuffer.getInt(position + RECORD_CAPACITY);
+    }
+
+    private int valuePosition(int position) {
+        return position + RECORD_HEADER_SIZE + mBuffer.getInt(position + RECORD_KEY_LENGTH);
+    }
+
+    private String readKey(int position) {
+        byte[] bytes = new byte[mBuffer.getInt(position + RECORD_KEY_LENGTH)];
+        read(position + RECORD_HEADER_SIZE, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String readString(int position) {
+        byte[] bytes = new byte[mBuffer.getInt(position + RECORD_VALUE_LENGTH)];
+        read(valuePosition(position), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void read(int position, byte[] bytes) {
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(position);
+        buffer.get(bytes);
+    }
+
+    private void write(int position, byte[] bytes) {
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(position);
+        buffer.put(bytes);
+    }
+
+    private void setEnd(int end) {
+        mEnd = end;
+        mBuffer.putInt(END_POSITION, end);
+    }
+
+    /**
+     * Rebuilds the key index from the records in the file.
+     * A record that runs past the end of the data means the file was cut short, so it and
+     * everything after it is dropped.
+     */
+    private void scan() throws IOException {
+        int end = Math.min(mBuffer.getInt(END_POSITION), mBuffer.capacity());
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= end) {
+            byte status = mBuffer.get(position);
+            int keyLength = mBuffer.getInt(position + RECORD_KEY_LENGTH);
+            int capacity = mBuffer.getInt(position + RECORD_CAPACITY);
+            if ((status != STATUS_LIVE && status != STATUS_DEAD) || keyLength < 0 || capacity < 0
+                    || (long) position + RECORD_HEADER_SIZE + keyLength + capacity > end) {
+                Log.e(TAG, "Corrupt record at " + position + ", dropping the rest of the Shift store");
+                break;
+            }
+            if (status == STATUS_LIVE) {
+                Integer previous = mIndex.put(readKey(position), position);
+                if (previous != null) {
+                    // Killed between appending a record and retiring the old one
+                    kill(previous);
+                }
+            } else {
+                mDeadBytes += recordSize(position);
+            }
+            position += recordSize(position);
+        }
+        setEnd(position);
+        if (mDeadBytes > (mEnd - HEADER_SIZE) / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the live records into a new file and renames it over the store. The store is never
+     * modified while records are moving, so being killed part way through loses nothing.
+     */
+    private void compact() throws IOException {
+        int liveSize = HEADER_SIZE;
+        for (int position : mIndex.values()) {
+            liveSize += recordSize(position);
+        }
+        File compacted = new File(mFile.getPath() + COMPACT_SUFFIX);
+        compacted.delete();
+        FileChannel channel = new RandomAccessFile(compacted, "rw").getChannel();
+        MappedByteBuffer buffer;
+        Map<String, Integer> index = new HashMap<>();
+        int write = HEADER_SIZE;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(liveSize, INITIAL_SIZE));
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            int read = HEADER_SIZE;
+            while (read < mEnd) {
+                int size = recordSize(read);
+                if (mBuffer.get(read) == STATUS_LIVE) {
+                    byte[] record = new byte[size];
+                    read(read, record);
+                    ByteBuffer target = buffer.duplicate();
+                    target.position(write);
+                    target.put(record);
+                    index.put(readKey(read), write);
+                    write += size;
+                }
+                read += size;
+            }
+            buffer.putInt(END_POSITION, write);
+            buffer.force();
+            if (!compacted.renameTo(mFile)) {
+                throw new IOException("Unable to replace " + mFile);
+            }
+        } catch (IOException e) {
+            channel.close();
+            compacted.delete();
+            throw e;
+        }
+        mChannel.close();
+        mChannel = channel;
+        mBuffer = buffer;
+        mEnd = write;
+        mDeadBytes = 0;
+        mIndex.clear();
+        mIndex.putAll(index);
+    }
+
+    private void kill(int position) {
+        mBuffer.put(position, STATUS_DEAD);
+        mDeadBytes += recordSize(position);
+    }
+
+    private void put(String key, byte type, byte[] value) throws IOException {
+        Integer position = mIndex.get(key);
+        if (position != null && type != TYPE_STRING && mBuffer.get(position + RECORD_TYPE) == type) {
+            // A single store, so the value is either entirely old or entirely new
+            if (type == TYPE_BOOLEAN) {
+                mBuffer.put(valuePosition(position), value[0]);
+            } else {
+                mBuffer.putInt(valuePosition(position), ByteBuffer.wrap(value).getInt());
+            }
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int size = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+        ensureCapacity(size);
+
+        int newPosition = mEnd;
+        mBuffer.put(newPosition + RECORD_TYPE, type);
+        mBuffer.putInt(newPosition + RECORD_KEY_LENGTH, keyBytes.length);
+        mBuffer.putInt(newPosition + RECORD_CAPACITY, value.length);
+        mBuffer.putInt(newPosition + RECORD_VALUE_LENGTH, value.length);
+        write(newPosition + RECORD_HEADER_SIZE, keyBytes);
+        write(newPosition + RECORD_HEADER_SIZE + keyBytes.length, value);
+        // Only mark the record live once it is complete, and only retire the old record once the
+        // new one is part of the store. scan() keeps the newer record if both are still live.
+        mBuffer.put(newPosition, STATUS_LIVE);
+        setEnd(newPosition + size);
+        // Looked up again, compacting to make room may have moved it
+        Integer previous = mIndex.put(key, newPosition);
+        if (previous != null) {
+            kill(previous);
+        }
+    }
+
+    private void remove(String key) {
+        Integer position = mIndex.remove(key);
+        if (position != null) {
+            kill(position);
+        }
+    }
+
+    private void ensureCapacity(int size) throws IOException {
+        if (mEnd + size <= mBuffer.capacity()) {
+            return;
+        }
+        if (mDeadBytes > 0) {
+            compact();
+            if (mEnd + size <= mBuffer.capacity()) {
+                return;
+            }
+        }
+        long newSize = Math.max((long) mBuffer.capacity() * 2, (long) mEnd + size);
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    private static byte[] encode(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private class MappedFileEditor implements Editor {
+
+        private final List<String> mKeys = new ArrayList<>();
+        // null marks a removal
+        private final List<byte[]> mValues = new ArrayList<>();
+        private final List<Byte> mTypes = new ArrayList<>();
+
+        private Editor stage(String key, byte type, byte[] value) {
+            mKeys.add(key);
+            mTypes.add(type);
+            mValues.add(value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return stage(key, TYPE_BOOLEAN, new byte[]{(byte) (value ? 1 : 0)});
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return stage(key, TYPE_INT, encode(value));
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return stage(key, TYPE_FLOAT, encode(Float.floatToIntBits(value)));
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            if (value == null) {
+                return remove(key);
+            }
+            return stage(key, TYPE_STRING, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return stage(key, (byte) 0, null);
+        }
+
+        @Override
+        public void apply() {
+            synchronized (MappedFileShiftStore.this) {
+                try {
+                    for (int i = 0; i < mKeys.size(); i++) {
+                        if (mValues.get(i) == null) {
+                            MappedFileShiftStore.this.remove(mKeys.get(i));
+                        } else {
+                            put(mKeys.get(i), mTypes.get(i), mValues.get(i));
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to write to Shift store", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ShiftStore} that only keeps values in memory. Used when the real store couldn't be
+ * loaded, so that ShiftValues can still be changed for the rest of the session.
+ */
+class MemoryShiftStore implements ShiftStore {
+
+    private final Map<String, Object> mValues = new HashMap<>();
+
+    @Override
+    public void load() {
+        // Nothing to read
+    }
+
+    @Override
+    public synchronized boolean exists(String key) {
+        return mValues.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defaultValue) {
+        Object value = mValues.get(key);
+        return value == null ? defaultValue : (Boolean) value;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defaultValue) {
+        Object value = mValues.get(key);
+        return value == null ? defaultValue : (Integer) value;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defaultValue) {
+        Object value = mValues.get(key);
+        return value == null ? defaultValue : (Float) value;
+    }
+
+    @Override
+    public synchronized String getString(String key, String defaultValue) {
+        Object value = mValues.get(key);
+        return value == null ? defaultValue : (String) value;
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(mValues);
+    }
+
+    @Override
+    public Editor edit() {
+        return new MemoryEditor();
+    }
+
+    private class MemoryEditor implements Editor {
+
+        private final List<String> mKeys = new ArrayList<>();
+        // null marks a removal
+        private final List<Object> mStaged = new ArrayList<>();
+
+        private Editor stage(String key, Object value) {
+            mKeys.add(key);
+            mStaged.add(value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return stage(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return stage(key, null);
+        }
+
+        @Override
+        public void apply() {
+            synchronized (MemoryShiftStore.this) {
+                for (int i = 0; i < mKeys.size(); i++) {
+                    if (mStaged.get(i) == null) {
+                        mValues.remove(mKeys.get(i));
+                    } else {
+                        mValues.put(mKeys.get(i), mStaged.get(i));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Map;
+
+/**
+ * The default {@link ShiftStore}. Keeps every value in a single SharedPreferences file.
+ */
+public class SharedPreferencesShiftStore implements ShiftStore {
+
+    static final String SHARED_PREF_KEY = "org.coursera.android.shift.SHIFT_PREFS_FILE";
+
+    private final SharedPreferences mSharedPreferences;
+
+    public SharedPreferencesShiftStore(Context context) {
+        mSharedPreferences = context.getSharedPreferences(SHARED_PREF_KEY, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void load() {
+        // SharedPreferences reads its file on a thread of its own, any read waits for it
+        mSharedPreferences.getAll();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return mSharedPreferences.contains(key);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return mSharedPreferences.getBoolean(key, defaultValue);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        return mSharedPreferences.getInt(key, defaultValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defaultValue) {
+        return mSharedPreferences.getFloat(key, defaultValue);
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        return mSharedPreferences.getString(key, defaultValue);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return mSharedPreferences.getAll();
+    }
+
+    @Override
+    public Editor edit() {
+        return new SharedPreferencesEditor(mSharedPreferences.edit());
+    }
+
+    private static class SharedPreferencesEditor implements Editor {
+
+        private final SharedPreferences.Editor mEditor;
+
+        SharedPreferencesEditor(SharedPreferences.Editor editor) {
+            mEditor = editor;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            mEditor.putBoolean(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            mEditor.putInt(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            mEditor.putFloat(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            mEditor.putString(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            mEditor.remove(key);
+            return this;
+        }
+
+        @Override
+        public void apply() {
+            mEditor.apply();
+        }
+    }
+}
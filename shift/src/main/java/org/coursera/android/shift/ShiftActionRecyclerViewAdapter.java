@@ -41,14 +41,11 @@ class ShiftActionRecyclerViewAdapter extends RecyclerView.Adapter<ShiftActionRec
 
     @Override
     public void onBindViewHolder(ShiftActionViewHolder holder, int position) {
-        final ShiftAction action = mData.get(position);
-        holder.title.setText(action.getActionName());
-        holder.container.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                action.getAction().run();
-            }
-        });
+        holder.title.setText(mData.get(position).getActionName());
+    }
+
+    void onActionClicked(int position) {
+        mData.get(position).getAction().run();
     }
 
     @Override
@@ -56,7 +53,10 @@ class ShiftActionRecyclerViewAdapter extends RecyclerView.Adapter<ShiftActionRec
         return mData.size();
     }
 
-    static class ShiftActionViewHolder extends RecyclerView.ViewHolder {
+    /**
+     * Listens to clicks on its own card, looking the action up by the position it is bound to
+     */
+    static class ShiftActionViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
         public final View container;
         public final TextView title;
 
@@ -64,6 +64,15 @@ class ShiftActionRecyclerViewAdapter extends RecyclerView.Adapter<ShiftActionRec
             super(view);
             title = (TextView) view.findViewById(R.id.action_title);
             container = view.findViewById(R.id.card_view);
+            container.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            int position = getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                ((ShiftActionRecyclerViewAdapter) getBindingAdapter()).onActionClicked(position);
+            }
         }
     }
 }
@@ -31,4 +31,16 @@ public class ShiftBoolean extends ShiftValue {
     public boolean getBooleanValue() {
         return ShiftManager.getInstance().getValueRegistrationManager().getBool(this);
     }
+
+    /**
+     * @return This value, whose observers are only told about actual changes
+     */
+    public ShiftObservable<Boolean> observe() {
+        return new ShiftObservable<Boolean>(this) {
+            @Override
+            Boolean read() {
+                return getBooleanValue();
+            }
+        };
+    }
 }
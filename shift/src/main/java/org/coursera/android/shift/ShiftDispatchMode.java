@@ -0,0 +1,35 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+/**
+ * Where a {@link ShiftValueListener} is called when a ShiftValue it is subscribed to changes
+ */
+public enum ShiftDispatchMode {
+
+    /**
+     * On the thread that changed the value, before the change returns. The default.
+     */
+    IMMEDIATE,
+
+    /**
+     * Posted to the main thread, even when the value was changed on it
+     */
+    MAIN_THREAD,
+
+    /**
+     * On a background thread shared by every listener subscribed this way, one call at a time
+     */
+    BACKGROUND
+}
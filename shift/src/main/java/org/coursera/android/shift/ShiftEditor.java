@@ -0,0 +1,110 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes several ShiftValues at once. Get one from {@link ShiftManager#edit()}.
+ *
+ * The changes are saved with a single write when {@link #commit()} is called. Listeners are then
+ * notified of all of them together, and the application restarts at most once even if several
+ * of the changed ShiftValues were created with shouldRestartApplicationOnChange.
+ */
+public class ShiftEditor {
+
+    private final ShiftValueRegistrationManagerImpl mRegistrationManager;
+    private final ShiftPersistenceManager mPersistence;
+    private final ShiftValueSubscriptionManagerImpl mSubscriptionManager;
+
+    // Setting the same ShiftValue twice keeps the last value
+    private final Map<ShiftValue, Object> mValues = new LinkedHashMap<>();
+
+    ShiftEditor(ShiftValueRegistrationManagerImpl registrationManager,
+                ShiftPersistenceManager persistence,
+                ShiftValueSubscriptionManagerImpl subscriptionManager) {
+        mRegistrationManager = registrationManager;
+        mPersistence = persistence;
+        mSubscriptionManager = subscriptionManager;
+    }
+
+    public ShiftEditor set(ShiftBoolean shiftValue, boolean value) {
+        mRegistrationManager.getPref(shiftValue, BooleanPreference.class, "boolean");
+        mValues.put(shiftValue, value);
+        return this;
+    }
+
+    public ShiftEditor set(ShiftInteger shiftValue, int value) {
+        mRegistrationManager.getPref(shiftValue, IntPreference.class, "int");
+        mValues.put(shiftValue, value);
+        return this;
+    }
+
+    public ShiftEditor set(ShiftFloat shiftValue, float value) {
+        mRegistrationManager.getPref(shiftValue, FloatPreference.class, "float");
+        mValues.put(shiftValue, value);
+        return this;
+    }
+
+    public ShiftEditor set(ShiftString shiftValue, String value) {
+        mRegistrationManager.getPref(shiftValue, StringPreference.class, "String");
+        mValues.put(shiftValue, value);
+        return this;
+    }
+
+    public ShiftEditor setSelectedIndex(ShiftStringArraySelector shiftValue, int index) {
+        StringListSelectorPreference pref = mRegistrationManager.getStringArraySelectorPreference(shiftValue);
+        mValues.put(shiftValue, pref.getValue().withSelectedIndex(index));
+        return this;
+    }
+
+    /**
+     * Saves every change made with this editor, then notifies listeners.
+     * ShiftValues that were set to the value they already had are left out.
+     */
+    @SuppressWarnings("unchecked")
+    public void commit() {
+        List<ShiftValue> changed = new ArrayList<>();
+        List<ShiftPref> prefs = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        ShiftStore.Editor editor = mPersistence.edit();
+        for (Map.Entry<ShiftValue, Object> entry : mValues.entrySet()) {
+            ShiftPref pref = mRegistrationManager.getPref(entry.getKey());
+            if (isUnchanged(pref, entry.getValue())) {
+                continue;
+            }
+            pref.put(editor, entry.getValue());
+            changed.add(entry.getKey());
+            prefs.add(pref);
+            values.add(entry.getValue());
+        }
+        mValues.clear();
+        if (changed.isEmpty()) {
+            return;
+        }
+        editor.apply();
+        for (int i = 0; i < prefs.size(); i++) {
+            prefs.get(i).cache(values.get(i));
+        }
+        mSubscriptionManager.notifyShiftListeners(changed);
+    }
+
+    private static boolean isUnchanged(ShiftPref pref, Object value) {
+        Object current = pref.getValue();
+        return value == null ? current == null : value.equals(current);
+    }
+}
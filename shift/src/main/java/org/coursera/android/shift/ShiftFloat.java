@@ -31,4 +31,16 @@ public class ShiftFloat extends ShiftValue {
     public float getFloatValue() {
         return ShiftManager.getInstance().getValueRegistrationManager().getFloat(this);
     }
+
+    /**
+     * @return This value, whose observers are only told about actual changes
+     */
+    public ShiftObservable<Float> observe() {
+        return new ShiftObservable<Float>(this) {
+            @Override
+            Float read() {
+                return getFloatValue();
+            }
+        };
+    }
 }
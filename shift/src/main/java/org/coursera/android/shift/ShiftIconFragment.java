@@ -17,16 +17,32 @@ import android.os.Bundle;
 import android.view.GestureDetector;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
-import android.widget.RelativeLayout;
 
+import androidx.dynamicanimation.animation.DynamicAnimation;
+import androidx.dynamicanimation.animation.SpringAnimation;
+import androidx.dynamicanimation.animation.SpringForce;
 import androidx.fragment.app.Fragment;
 
+/**
+ * The floating Shift icon. It is moved with translationX/Y, which the render thread can apply
+ * without measuring or laying out the overlay, and snaps to the nearest or flung-to side when
+ * released.
+ */
 public class ShiftIconFragment extends Fragment {
 
+    // How far a vertical fling carries the icon, in seconds of its release velocity
+    private static final float FLING_PROJECTION_SECONDS = 0.15f;
+
     private View mHead;
+    private View mLayout;
     private ShiftLauncherView mShiftLauncherView;
+    private SpringAnimation mSpringX;
+    private SpringAnimation mSpringY;
+    private int mMinFlingVelocity;
 
     public ShiftIconFragment() {
         mShiftLauncherView = new ShiftLauncherView();
@@ -36,28 +52,37 @@ public class ShiftIconFragment extends Fragment {
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
 
-        final RelativeLayout layout = (RelativeLayout) inflater.inflate(R.layout.shift_menu,
-                container, false);
+        mLayout = inflater.inflate(R.layout.shift_menu, container, false);
+        mHead = mLayout.findViewById(R.id.head);
+        mSpringX = createSpring(DynamicAnimation.TRANSLATION_X);
+        mSpringY = createSpring(DynamicAnimation.TRANSLATION_Y);
+        mMinFlingVelocity = ViewConfiguration.get(getActivity()).getScaledMinimumFlingVelocity();
 
-        mHead = layout.findViewById(R.id.head);
-        final RelativeLayout.LayoutParams iconParams;
-        iconParams = (RelativeLayout.LayoutParams) mHead.getLayoutParams();
+        // Only layouts of the overlay itself, e.g. on rotation, move the icon to its saved place
+        mLayout.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+                    restorePosition();
+                }
+            }
+        });
 
         final GestureDetector gestureDetector = new GestureDetector(getActivity(), new SingleTapConfirm());
 
         mHead.setOnTouchListener(new View.OnTouchListener() {
-            private int initialX;
-            private int initialY;
+            private float initialX;
+            private float initialY;
             private float initialTouchX;
             private float initialTouchY;
+            private VelocityTracker velocityTracker;
 
             @Override
             public boolean onTouch(View v, MotionEvent event) {
-                final int yLimit = layout.getMeasuredHeight() - mHead.getMeasuredHeight();
-                final int xLimit = layout.getMeasuredWidth() - mHead.getMeasuredWidth();
-
                 // single tap
                 if (gestureDetector.onTouchEvent(event)) {
+                    recycleVelocityTracker();
                     mShiftLauncherView.showShiftMenu(getActivity());
                     return true;
                 }
@@ -65,29 +90,110 @@ public class ShiftIconFragment extends Fragment {
                 // drag icon
                 switch (event.getAction()) {
                     case MotionEvent.ACTION_DOWN:
-                        initialX = iconParams.leftMargin;
-                        initialY = iconParams.topMargin;
+                        mSpringX.cancel();
+                        mSpringY.cancel();
+                        initialX = mHead.getTranslationX();
+                        initialY = mHead.getTranslationY();
                         initialTouchX = event.getRawX();
                         initialTouchY = event.getRawY();
+                        recycleVelocityTracker();
+                        velocityTracker = VelocityTracker.obtain();
+                        velocityTracker.addMovement(event);
                         return true;
                     case MotionEvent.ACTION_CANCEL:
+                        recycleVelocityTracker();
+                        settle(0, 0);
                         return false;
                     case MotionEvent.ACTION_UP:
+                        float velocityX = 0;
+                        float velocityY = 0;
+                        if (velocityTracker != null) {
+                            velocityTracker.addMovement(event);
+                            velocityTracker.computeCurrentVelocity(1000);
+                            velocityX = velocityTracker.getXVelocity();
+                            velocityY = velocityTracker.getYVelocity();
+                            recycleVelocityTracker();
+                        }
+                        settle(velocityX, velocityY);
                         return true;
                     case MotionEvent.ACTION_MOVE:
-                        int newX = initialX + (int) (event.getRawX() - initialTouchX);
-                        int newY = initialY + (int) (event.getRawY() - initialTouchY);
-
-                        iconParams.leftMargin = newX < 0 ? 0 : Math.min(newX, xLimit);
-                        iconParams.topMargin = newY < 0 ? 0 : Math.min(newY, yLimit);
-
-                        layout.updateViewLayout(mHead, iconParams);
+                        if (velocityTracker != null) {
+                            velocityTracker.addMovement(event);
+                        }
+                        mHead.setTranslationX(clamp(initialX + event.getRawX() - initialTouchX, getXLimit()));
+                        mHead.setTranslationY(clamp(initialY + event.getRawY() - initialTouchY, getYLimit()));
                         return true;
                 }
                 return false;
             }
+
+            private void recycleVelocityTracker() {
+                if (velocityTracker != null) {
+                    velocityTracker.recycle();
+                    velocityTracker = null;
+                }
+            }
         });
-        return layout;
+        return mLayout;
+    }
+
+    @Override
+    public void onDestroyView() {
+        mSpringX.cancel();
+        mSpringY.cancel();
+        super.onDestroyView();
+    }
+
+    private SpringAnimation createSpring(DynamicAnimation.ViewProperty property) {
+        SpringAnimation spring = new SpringAnimation(mHead, property);
+        spring.setSpring(new SpringForce()
+                .setStiffness(SpringForce.STIFFNESS_LOW)
+                .setDampingRatio(SpringForce.DAMPING_RATIO_LOW_BOUNCY));
+        // Never past the edges of the overlay
+        spring.setMinValue(0);
+        return spring;
+    }
+
+    private float getXLimit() {
+        return Math.max(0, mLayout.getWidth() - mHead.getWidth());
+    }
+
+    private float getYLimit() {
+        return Math.max(0, mLayout.getHeight() - mHead.getHeight());
+    }
+
+    private static float clamp(float value, float max) {
+        return value < 0 ? 0 : Math.min(value, max);
+    }
+
+    /**
+     * Springs the released icon to the side it was flung towards, or the nearest one, and
+     * saves where it will come to rest
+     */
+    private void settle(float velocityX, float velocityY) {
+        float xLimit = getXLimit();
+        float yLimit = getYLimit();
+        boolean toRight = Math.abs(velocityX) >= mMinFlingVelocity
+                ? velocityX > 0
+                : mHead.getTranslationX() > xLimit / 2;
+        float targetY = clamp(mHead.getTranslationY() + velocityY * FLING_PROJECTION_SECONDS, yLimit);
+
+        mSpringX.setMaxValue(xLimit);
+        mSpringX.setStartVelocity(velocityX);
+        mSpringX.animateToFinalPosition(toRight ? xLimit : 0);
+        mSpringY.setMaxValue(yLimit);
+        mSpringY.setStartVelocity(velocityY);
+        mSpringY.animateToFinalPosition(targetY);
+
+        ShiftIconPosition.get(getActivity()).set(toRight ? 1 : 0, yLimit == 0 ? 0 : targetY / yLimit);
+    }
+
+    private void restorePosition() {
+        mSpringX.cancel();
+        mSpringY.cancel();
+        ShiftIconPosition position = ShiftIconPosition.get(getActivity());
+        mHead.setTranslationX(position.getX() * getXLimit());
+        mHead.setTranslationY(position.getY() * getYLimit());
     }
 
     public void hide() {
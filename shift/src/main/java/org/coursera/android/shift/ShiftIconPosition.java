@@ -0,0 +1,76 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Where the floating Shift icon was last left, shared by every activity.
+ *
+ * The position is kept as fractions of the space the icon can move in, so that it carries over
+ * to screens and orientations of other sizes. It has its own SharedPreferences file, apart from
+ * the ShiftValues.
+ */
+class ShiftIconPosition {
+
+    static final String SHARED_PREF_KEY = "org.coursera.android.shift.SHIFT_ICON_PREFS_FILE";
+    private static final String KEY_X = "x";
+    private static final String KEY_Y = "y";
+
+    private static ShiftIconPosition sInstance;
+
+    private final SharedPreferences mSharedPreferences;
+    private float mX;
+    private float mY;
+
+    static synchronized ShiftIconPosition get(Context context) {
+        if (sInstance == null) {
+            sInstance = new ShiftIconPosition(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ShiftIconPosition(Context context) {
+        mSharedPreferences = context.getSharedPreferences(SHARED_PREF_KEY, Context.MODE_PRIVATE);
+        mX = mSharedPreferences.getFloat(KEY_X, 0);
+        mY = mSharedPreferences.getFloat(KEY_Y, 0);
+    }
+
+    /**
+     * @return From 0 at the left edge to 1 at the right edge
+     */
+    float getX() {
+        return mX;
+    }
+
+    /**
+     * @return From 0 at the top edge to 1 at the bottom edge
+     */
+    float getY() {
+        return mY;
+    }
+
+    void set(float x, float y) {
+        if (x == mX && y == mY) {
+            return;
+        }
+        mX = x;
+        mY = y;
+        mSharedPreferences.edit()
+                .putFloat(KEY_X, x)
+                .putFloat(KEY_Y, y)
+                .apply();
+    }
+}
@@ -31,5 +31,16 @@ public class ShiftInteger extends ShiftValue {
     public int getIntValue() {
         return ShiftManager.getInstance().getValueRegistrationManager().getInt(this);
     }
-}
 
+    /**
+     * @return This value, whose observers are only told about actual changes
+     */
+    public ShiftObservable<Integer> observe() {
+        return new ShiftObservable<Integer>(this) {
+            @Override
+            Integer read() {
+                return getIntValue();
+            }
+        };
+    }
+}
@@ -64,6 +64,17 @@ public class ShiftLauncherView {
         }
     }
 
+    /**
+     * Optional. Inflates the Shift Menu's views in the background once the app is idle, so that
+     * the menu opens faster the first time. Call this after {@link #showFloatingIcon(FragmentActivity)}
+     * or wherever the menu is likely to be opened from.
+     */
+    public void warmUpShiftMenu(FragmentActivity activity) {
+        if (ShiftManager.getInstance().getVisibilityClient().isVisible()) {
+            ShiftViewPoolFragment.get(activity).warmUp();
+        }
+    }
+
     private void addFragment(FragmentActivity activity, Fragment fragment, String tag, boolean isVisible) {
         FragmentManager manager = activity.getSupportFragmentManager();
         Fragment oldInstance = manager.findFragmentByTag(tag);
@@ -14,8 +14,18 @@
 package org.coursera.android.shift;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * ShiftManager the singleton that the client will use in order to use Shift.
@@ -34,6 +44,18 @@ public class ShiftManager implements ShiftValueSubscriptionManager, ShiftActions
     private ShiftVisibilityManager mVisibilityManager;
     private ShiftPersistenceManager mPersistenceManager;
 
+    private static final String TAG = ShiftManager.class.getCanonicalName();
+
+    // Completes once ShiftValues have been loaded from the ShiftStore, null if they were loaded
+    // synchronously
+    private FutureTask<ShiftManager> mInitialization;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> mReadyCallbacks = new ArrayList<>();
+    private volatile boolean mReady;
+
+    private volatile long mEditCommitDelayMillis = ShiftValueEditCommitter.DEFAULT_DELAY_MILLIS;
+    private volatile boolean mStickyCategoryHeaders;
+
     private static ShiftManager INSTANCE;
 
     /**
@@ -67,18 +89,31 @@ public class ShiftManager implements ShiftValueSubscriptionManager, ShiftActions
      * @param shiftVisibilityClient Determines whether or not a user can view the ShiftLauncherView
      */
     public static void initialize(Context context, ShiftVisibilityClient shiftVisibilityClient) {
-        if (INSTANCE == null) {
-            INSTANCE = new ShiftManager();
-            INSTANCE.mVisibilityManager = new ShiftVisibilityManagerImpl(shiftVisibilityClient);
-            INSTANCE.mPersistenceManager = new ShiftPersistenceManager(context);
-            INSTANCE.mValueRegistrationManager = new ShiftValueRegistrationManagerImpl(INSTANCE.mPersistenceManager);
-            // SubscriptionManager relies on value registration manager so must initialize
-            // mValueRegistrationManager first
-            INSTANCE.mValueSubscriptionManager = new ShiftValueSubscriptionManagerImpl(context);
+        initialize(context, shiftVisibilityClient, new SharedPreferencesShiftStore(context));
+    }
 
+    /**
+     * Initializes ShiftManager with the {@link ShiftStore} ShiftValues are saved in.
+     *
+     * @param context
+     * @param shiftVisibilityClient Determines whether or not a user can view the ShiftLauncherView
+     * @param store                 Where ShiftValues are saved, e.g. {@link MappedFileShiftStore}
+     */
+    public static void initialize(Context context, ShiftVisibilityClient shiftVisibilityClient, ShiftStore store) {
+        if (INSTANCE == null) {
+            create(context, shiftVisibilityClient, store);
+            INSTANCE.mReady = true;
         }
     }
 
+    private static void create(Context context, ShiftVisibilityClient shiftVisibilityClient, ShiftStore store) {
+        INSTANCE = new ShiftManager();
+        INSTANCE.mVisibilityManager = new ShiftVisibilityManagerImpl(shiftVisibilityClient);
+        INSTANCE.mPersistenceManager = new ShiftPersistenceManager(store);
+        INSTANCE.mValueRegistrationManager = new ShiftValueRegistrationManagerImpl(INSTANCE.mPersistenceManager);
+        INSTANCE.mValueSubscriptionManager = new ShiftValueSubscriptionManagerImpl(context);
+    }
+
     /**
      * Initializes ShiftManager
      * Use this if you want the ability to restart your application when ShiftValues are updated
@@ -91,14 +126,164 @@ public class ShiftManager implements ShiftValueSubscriptionManager, ShiftActions
      * @return
      */
     public static void initialize(Context context, ShiftVisibilityClient shiftVisibilityClient, Class launcherClass) {
+        initialize(context, shiftVisibilityClient, launcherClass, new SharedPreferencesShiftStore(context));
+    }
+
+    /**
+     * Initializes ShiftManager with the ability to restart your application and the
+     * {@link ShiftStore} ShiftValues are saved in.
+     *
+     * @param context
+     * @param shiftVisibilityClient Determines whether or not a user can view the ShiftLauncherView
+     * @param launcherClass         Your Applications LAUNCHER {@link android.app.Activity} class.
+     * @param store                 Where ShiftValues are saved, e.g. {@link MappedFileShiftStore}
+     */
+    public static void initialize(Context context, ShiftVisibilityClient shiftVisibilityClient, Class launcherClass,
+                                  ShiftStore store) {
         if (INSTANCE == null) {
-            initialize(context, shiftVisibilityClient);
+            initialize(context, shiftVisibilityClient, store);
             if (INSTANCE.mValueSubscriptionManager != null) {
                 INSTANCE.mValueSubscriptionManager.setLauncherClassForRestart(launcherClass);
             }
         }
     }
 
+    /**
+     * Initializes ShiftManager without reading from disk on the calling thread.
+     * ShiftValues are loaded from SharedPreferences on a background thread.
+     * See {@link #initializeAsync(Context, ShiftVisibilityClient, Class, Callable)}
+     *
+     * @param context
+     * @param shiftVisibilityClient Determines whether or not a user can view the ShiftLauncherView
+     * @return A Future that completes once ShiftValues have been loaded
+     */
+    public static Future<ShiftManager> initializeAsync(final Context context,
+                                                       ShiftVisibilityClient shiftVisibilityClient) {
+        return initializeAsync(context, shiftVisibilityClient, null, new Callable<ShiftStore>() {
+            @Override
+            public ShiftStore call() {
+                return new SharedPreferencesShiftStore(context);
+            }
+        });
+    }
+
+    /**
+     * Initializes ShiftManager without reading from disk on the calling thread.
+     * {@link #getInstance()} can be used as soon as this returns. The {@link ShiftStore} is
+     * created and loaded on a background thread; until then ShiftValues have their default
+     * values, and changes made to them are saved once the store has loaded.
+     * When loading finishes, listeners are notified of every ShiftValue whose saved value
+     * differs from its default. The application is not restarted for these.
+     * If the store can't be loaded, ShiftValues keep their defaults and changes made to them only
+     * last until the application is closed.
+     *
+     * @param context
+     * @param shiftVisibilityClient Determines whether or not a user can view the ShiftLauncherView
+     * @param launcherClass         Your Applications LAUNCHER {@link android.app.Activity} class,
+     *                              or null if the application should not restart
+     * @param storeLoader           Creates the ShiftStore ShiftValues are saved in. Called on a
+     *                              background thread.
+     * @return A Future that completes once ShiftValues have been loaded, or with the exception
+     * thrown by storeLoader
+     */
+    public static Future<ShiftManager> initializeAsync(Context context, ShiftVisibilityClient shiftVisibilityClient,
+                                                       Class launcherClass,
+                                                       final Callable<ShiftStore> storeLoader) {
+        if (INSTANCE == null) {
+            final DeferredShiftStore store = new DeferredShiftStore();
+            create(context, shiftVisibilityClient, store);
+            if (launcherClass != null) {
+                INSTANCE.mValueSubscriptionManager.setLauncherClassForRestart(launcherClass);
+            }
+            final ShiftManager manager = INSTANCE;
+            manager.mInitialization = new FutureTask<>(new Callable<ShiftManager>() {
+                @Override
+                public ShiftManager call() throws Exception {
+                    ShiftStore loaded;
+                    try {
+                        loaded = storeLoader.call();
+                        loaded.load();
+                    } catch (Exception e) {
+                        Log.e(TAG, "Failed to load the Shift store, changes to ShiftValues won't be saved", e);
+                        store.setStore(new MemoryShiftStore());
+                        manager.onStoreLoaded();
+                        throw e;
+                    }
+                    store.setStore(loaded);
+                    manager.onStoreLoaded();
+                    return manager;
+                }
+            });
+            Thread thread = new Thread(manager.mInitialization, "ShiftInitialization");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (INSTANCE.mInitialization == null) {
+            // Already initialized synchronously, there is nothing to wait for
+            FutureTask<ShiftManager> initialized = new FutureTask<>(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, INSTANCE);
+            initialized.run();
+            return initialized;
+        }
+        return INSTANCE.mInitialization;
+    }
+
+    /**
+     * Picks up values saved before the store was loaded, then tells everybody waiting.
+     */
+    private void onStoreLoaded() {
+        final List<ShiftValue> changed = mValueRegistrationManager.reloadValues();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!changed.isEmpty()) {
+                    mValueSubscriptionManager.notifyListeners(changed);
+                }
+                List<Runnable> callbacks;
+                synchronized (mReadyCallbacks) {
+                    mReady = true;
+                    callbacks = new ArrayList<>(mReadyCallbacks);
+                    mReadyCallbacks.clear();
+                }
+                for (Runnable callback : callbacks) {
+                    callback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return False while ShiftValues are still being loaded after
+     * {@link #initializeAsync(Context, ShiftVisibilityClient)}
+     */
+    public boolean isReady() {
+        return mReady;
+    }
+
+    /**
+     * Runs the callback on the main thread once ShiftValues have been loaded. If they already
+     * have been, the callback is run right away when called on the main thread and posted to it
+     * otherwise.
+     *
+     * @param callback
+     */
+    public void runWhenReady(Runnable callback) {
+        synchronized (mReadyCallbacks) {
+            if (!mReady) {
+                mReadyCallbacks.add(callback);
+                return;
+            }
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            callback.run();
+        } else {
+            mMainHandler.post(callback);
+        }
+    }
+
     ShiftActionsManagerImpl getActionManager() {
         return mActionManager;
     }
@@ -150,6 +335,49 @@ public class ShiftManager implements ShiftValueSubscriptionManager, ShiftActions
         mVisibilityManager.setVisibilityClient(visibilityClient);
     }
 
+    /**
+     * Returns a new {@link ShiftEditor} for changing several ShiftValues at once.
+     * Nothing is changed until {@link ShiftEditor#commit()} is called.
+     *
+     * @return
+     */
+    public ShiftEditor edit() {
+        return new ShiftEditor(mValueRegistrationManager, mPersistenceManager, mValueSubscriptionManager);
+    }
+
+    /**
+     * Sets how long the values menu waits after the last keystroke in a text field before it
+     * saves the value and notifies listeners. Values are also saved as soon as the field loses
+     * focus or the keyboard's action key is pressed. Defaults to 500ms.
+     *
+     * @param delayMillis
+     */
+    public void setEditCommitDelay(long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("The edit commit delay can't be negative: " + delayMillis);
+        }
+        mEditCommitDelayMillis = delayMillis;
+    }
+
+    long getEditCommitDelay() {
+        return mEditCommitDelayMillis;
+    }
+
+    /**
+     * When enabled, category headers in the values menu are drawn over the list and the current
+     * category's header stays pinned to the top while scrolling, instead of scrolling by as rows.
+     * Takes effect the next time the values menu is opened. Disabled by default.
+     *
+     * @param stickyCategoryHeaders
+     */
+    public void setStickyCategoryHeaders(boolean stickyCategoryHeaders) {
+        mStickyCategoryHeaders = stickyCategoryHeaders;
+    }
+
+    boolean hasStickyCategoryHeaders() {
+        return mStickyCategoryHeaders;
+    }
+
     // Shift Value Subscription Manager Interface
 
     void notifyShiftListeners(ShiftValue feature) {
@@ -171,16 +399,76 @@ public class ShiftManager implements ShiftValueSubscriptionManager, ShiftActions
         mValueSubscriptionManager.subscribeToUpdatesForAllShiftValues(listener);
     }
 
+    @Override
+    public void subscribeToUpdatesForAllShiftValues(ShiftValueListener listener, ShiftDispatchMode mode) {
+        mValueSubscriptionManager.subscribeToUpdatesForAllShiftValues(listener, mode);
+    }
+
     @Override
     public void subscribeToUpdatesForShiftValue(ShiftValueListener listener, ShiftValue value) {
         mValueSubscriptionManager.subscribeToUpdatesForShiftValue(listener, value);
     }
 
+    @Override
+    public void subscribeToUpdatesForShiftValue(ShiftValueListener listener, ShiftValue value,
+                                                ShiftDispatchMode mode) {
+        mValueSubscriptionManager.subscribeToUpdatesForShiftValue(listener, value, mode);
+    }
+
     @Override
     public void subscribeToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values) {
         mValueSubscriptionManager.subscribeToUpdatesForShiftValues(listener, values);
     }
 
+    @Override
+    public void subscribeToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values,
+                                                 ShiftDispatchMode mode) {
+        mValueSubscriptionManager.subscribeToUpdatesForShiftValues(listener, values, mode);
+    }
+
+    @Override
+    public void subscribeToUpdatesForCategory(ShiftValueListener listener, String category) {
+        mValueSubscriptionManager.subscribeToUpdatesForCategory(listener, category);
+    }
+
+    @Override
+    public void subscribeToUpdatesForCategory(ShiftValueListener listener, String category,
+                                              ShiftDispatchMode mode) {
+        mValueSubscriptionManager.subscribeToUpdatesForCategory(listener, category, mode);
+    }
+
+    @Override
+    public void subscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix) {
+        mValueSubscriptionManager.subscribeToUpdatesForCategoryPrefix(listener, prefix);
+    }
+
+    @Override
+    public void subscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix,
+                                                    ShiftDispatchMode mode) {
+        mValueSubscriptionManager.subscribeToUpdatesForCategoryPrefix(listener, prefix, mode);
+    }
+
+    @Override
+    public void subscribeWeaklyToUpdatesForAllShiftValues(ShiftValueListener listener) {
+        mValueSubscriptionManager.subscribeWeaklyToUpdatesForAllShiftValues(listener);
+    }
+
+    @Override
+    public void subscribeWeaklyToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values) {
+        mValueSubscriptionManager.subscribeWeaklyToUpdatesForShiftValues(listener, values);
+    }
+
+    @Override
+    public void subscribeToUpdatesForAllShiftValues(LifecycleOwner owner, ShiftValueListener listener) {
+        mValueSubscriptionManager.subscribeToUpdatesForAllShiftValues(owner, listener);
+    }
+
+    @Override
+    public void subscribeToUpdatesForShiftValues(LifecycleOwner owner, ShiftValueListener listener,
+                                                 ShiftValue[] values) {
+        mValueSubscriptionManager.subscribeToUpdatesForShiftValues(owner, listener, values);
+    }
+
     @Override
     public void unsubscribeToUpdatesForAllShiftValues(ShiftValueListener listener) {
         mValueSubscriptionManager.unsubscribeToUpdatesForAllShiftValues(listener);
@@ -196,6 +484,16 @@ public class ShiftManager implements ShiftValueSubscriptionManager, ShiftActions
         mValueSubscriptionManager.unsubscribeToUpdatesForShiftValues(listener, values);
     }
 
+    @Override
+    public void unsubscribeToUpdatesForCategory(ShiftValueListener listener, String category) {
+        mValueSubscriptionManager.unsubscribeToUpdatesForCategory(listener, category);
+    }
+
+    @Override
+    public void unsubscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix) {
+        mValueSubscriptionManager.unsubscribeToUpdatesForCategoryPrefix(listener, prefix);
+    }
+
     // Shift Actions Manager Interface
 
     @Override
@@ -0,0 +1,118 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The value of a {@link ShiftValue} over time, see e.g. {@link ShiftBoolean#observe()}.
+ *
+ * Observers are given the current value when they start observing, then only values that differ
+ * from the last one they were given. Changes that leave the value as it was, like selecting the
+ * selected item again, are not reported. Observers that are not called
+ * {@link ShiftDispatchMode#IMMEDIATE}ly are given the latest value once they are called, not
+ * every value in between. Observers called immediately by changes made on several threads at
+ * once may be given those values in either order.
+ *
+ * @param <T> The type of the value
+ */
+public abstract class ShiftObservable<T> {
+
+    public interface Observer<T> {
+        void onChanged(T value);
+    }
+
+    public interface Subscription {
+        /**
+         * The observer is not called anymore, even for changes that were already pending
+         */
+        void unsubscribe();
+    }
+
+    private final ShiftValue mShiftValue;
+
+    ShiftObservable(ShiftValue shiftValue) {
+        mShiftValue = shiftValue;
+    }
+
+    /**
+     * @return The current value
+     */
+    abstract T read();
+
+    /**
+     * Observes the value on the threads it is changed on
+     */
+    public Subscription subscribe(Observer<T> observer) {
+        return subscribe(observer, ShiftDispatchMode.IMMEDIATE);
+    }
+
+    /**
+     * Observes the value as the given mode says. The current value is given to the observer the
+     * same way, or before this returns for {@link ShiftDispatchMode#IMMEDIATE}.
+     */
+    public Subscription subscribe(Observer<T> observer, ShiftDispatchMode mode) {
+        final DistinctListener listener = new DistinctListener(observer);
+        ShiftManager manager = ShiftManager.getInstance();
+        // Subscribe first, so that no change between reading and subscribing is missed
+        manager.subscribeToUpdatesForShiftValue(listener, mShiftValue, mode);
+        Executor executor = manager.getValueSubscriptionManager().getExecutor(mode);
+        if (executor == null) {
+            listener.onShiftValuesUpdated(mShiftValue);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onShiftValuesUpdated(mShiftValue);
+                }
+            });
+        }
+        return listener;
+    }
+
+    private class DistinctListener implements ShiftValueListener, Subscription {
+        private final Observer<T> mObserver;
+        private boolean mHasValue;
+        private T mLastValue;
+        private volatile boolean mUnsubscribed;
+
+        DistinctListener(Observer<T> observer) {
+            mObserver = observer;
+        }
+
+        @Override
+        public void onShiftValuesUpdated(ShiftValue shiftValue) {
+            T value;
+            synchronized (this) {
+                if (mUnsubscribed) {
+                    return;
+                }
+                value = read();
+                if (mHasValue && (value == null ? mLastValue == null : value.equals(mLastValue))) {
+                    return;
+                }
+                mHasValue = true;
+                mLastValue = value;
+            }
+            // Outside the lock, so the observer can't deadlock with another thread changing values
+            mObserver.onChanged(value);
+        }
+
+        @Override
+        public void unsubscribe() {
+            mUnsubscribed = true;
+            ShiftManager.getInstance().unsubscribeToUpdatesForShiftValue(this, mShiftValue);
+        }
+    }
+}
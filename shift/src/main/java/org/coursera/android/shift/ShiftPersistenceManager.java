@@ -14,28 +14,35 @@ limitations under the License.
 package org.coursera.android.shift;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
 
-@SuppressWarnings("SynchronizeOnNonFinalField")
 class ShiftPersistenceManager {
 
     private static final String TAG = ShiftPersistenceManager.class.getCanonicalName();
 
-    private static final String SHARED_PREF_KEY = "org.coursera.android.shift.SHIFT_PREFS_FILE";
+    // Gson instances are thread-safe, so share one and skip reflection for the types we know
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(StringListSelector.class, new StringListSelectorTypeAdapter())
+            .create();
 
     // Invalidate once per launch
     private boolean shouldInvalidate = true;
 
-    private SharedPreferences sharedPreferences;
+    private final ShiftStore mStore;
 
     public ShiftPersistenceManager(Context context) {
-        sharedPreferences = context.getSharedPreferences(SHARED_PREF_KEY, Context.MODE_PRIVATE);
+        this(new SharedPreferencesShiftStore(context));
+    }
+
+    public ShiftPersistenceManager(ShiftStore store) {
+        mStore = store;
     }
 
     /**
@@ -44,53 +51,85 @@ class ShiftPersistenceManager {
      * database that are no longer needed.
      * We should remove the extra keys/values that are not stored in the
      * {@link ShiftValueSubscriptionManagerImpl}
+     * All of the extra keys are removed with a single write. Only runs once per launch, and
+     * reads the whole store, so call it off the main thread.
      *
      * @param keysToKeep
+     * @return What was removed, or null if the database has already been invalidated
      */
-    public void invalidateDatabase(Set<String> keysToKeep) {
+    public synchronized InvalidationResult invalidateDatabase(Set<String> keysToKeep) {
         if (keysToKeep == null) {
             Log.e(TAG, "Set keysToKeep are null, failed to invalidateDB");
-            return;
+            return null;
+        }
+        if (!shouldInvalidate) {
+            return null;
         }
-        if (shouldInvalidate) {
-            Map<String, ?> sharedPreferenceKeys = sharedPreferences.getAll();
-            for (Map.Entry<String, ?> entry : sharedPreferenceKeys.entrySet()) {
-                if (!keysToKeep.contains(entry.getKey()))
-                    sharedPreferences.edit().remove(entry.getKey());
+        shouldInvalidate = false;
+        ShiftStore.Editor editor = mStore.edit();
+        int keysRemoved = 0;
+        long bytesReclaimed = 0;
+        for (Map.Entry<String, ?> entry : mStore.getAll().entrySet()) {
+            if (!keysToKeep.contains(entry.getKey())) {
+                editor.remove(entry.getKey());
+                keysRemoved++;
+                bytesReclaimed += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
             }
-            sharedPreferences.edit().apply();
-            shouldInvalidate = false;
         }
+        if (keysRemoved > 0) {
+            editor.apply();
+        }
+        return new InvalidationResult(keysRemoved, bytesReclaimed);
     }
 
-    public boolean shouldInvalidate() {
+    // Approximate, stores add their own overhead per value
+    private static long sizeOf(Object value) {
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8).length;
+        } else if (value instanceof Boolean) {
+            return 1;
+        }
+        return 4;
+    }
+
+    public synchronized boolean shouldInvalidate() {
         return shouldInvalidate;
     }
 
+    static class InvalidationResult {
+        final int KEYS_REMOVED;
+        final long BYTES_RECLAIMED;
+
+        InvalidationResult(int keysRemoved, long bytesReclaimed) {
+            KEYS_REMOVED = keysRemoved;
+            BYTES_RECLAIMED = bytesReclaimed;
+        }
+    }
+
     /*
         INT
      */
     public void putInt(String key, int value) {
-        sharedPreferences.edit().putInt(key, value).apply();
+        mStore.edit().putInt(key, value).apply();
     }
 
     public int getInt(String key, int defaultValue) {
-        return sharedPreferences.getInt(key, defaultValue);
+        return mStore.getInt(key, defaultValue);
     }
 
     public boolean exists(String key) {
-        return sharedPreferences.contains(key);
+        return mStore.exists(key);
     }
 
     /*
         STRING
      */
     public void putString(String key, String value) {
-        sharedPreferences.edit().putString(key, value).apply();
+        mStore.edit().putString(key, value).apply();
     }
 
     public String getString(String key, String defaultValue) {
-        return sharedPreferences.getString(key, defaultValue);
+        return mStore.getString(key, defaultValue);
     }
 
     /*
@@ -98,26 +137,33 @@ class ShiftPersistenceManager {
      */
 
     public void putBoolean(String key, boolean value) {
-        sharedPreferences.edit().putBoolean(key, value).apply();
+        mStore.edit().putBoolean(key, value).apply();
     }
 
     public boolean getBoolean(String key, boolean defaultValue) {
-        return sharedPreferences.getBoolean(key, defaultValue);
+        return mStore.getBoolean(key, defaultValue);
     }
 
     /*
         FLOAT
      */
     public void putFloat(String key, float value) {
-        sharedPreferences.edit().putFloat(key, value).apply();
+        mStore.edit().putFloat(key, value).apply();
     }
 
     public float getFloat(String key, float defaultValue) {
-        return sharedPreferences.getFloat(key, defaultValue);
+        return mStore.getFloat(key, defaultValue);
+    }
+
+    /**
+     * Returns an editor for making several changes with a single write
+     */
+    public ShiftStore.Editor edit() {
+        return mStore.edit();
     }
 
     public void remove(String key, String type) {
-        sharedPreferences.edit().remove(key).apply();
+        mStore.edit().remove(key).apply();
     }
 
     // Objects
@@ -129,12 +175,20 @@ class ShiftPersistenceManager {
      * @param <T>
      */
     public <T> void putObject(String key, T value) {
-        Gson gson = new Gson();
-        sharedPreferences.edit().putString(key, gson.toJson(value)).apply();
+        ShiftStore.Editor editor = edit();
+        putObject(editor, key, value);
+        editor.apply();
+    }
+
+    public <T> void putObject(ShiftStore.Editor editor, String key, T value) {
+        editor.putString(key, GSON.toJson(value));
     }
 
     public <T> T getObject(String key, Class<T> objectClass, T defaultValue) {
-        Gson gson = new Gson();
-        return gson.fromJson(sharedPreferences.getString(key, gson.toJson(defaultValue)), objectClass);
+        String json = mStore.getString(key, null);
+        if (json == null) {
+            return defaultValue;
+        }
+        return GSON.fromJson(json, objectClass);
     }
 }
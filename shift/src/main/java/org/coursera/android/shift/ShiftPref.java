@@ -18,23 +18,48 @@ abstract class ShiftPref <T> {
     protected final String KEY;
     protected final T DEFAULT_VALUE;
     protected final Class<T> CLASS;
+    protected final ShiftValueCache CACHE;
+    protected final int SLOT;
 
     public ShiftPref(ShiftPersistenceManager persistenceManager,
+                     ShiftValueCache cache,
                      String key,
                      T defaultValue,
                      Class<T> myClass) {
         PERSISTENCE = persistenceManager;
+        CACHE = cache;
+        SLOT = cache.newSlot();
         KEY = key;
         DEFAULT_VALUE = defaultValue;
         CLASS = myClass;
-        if (!isValueSet()) {
-            setValueToDefault();
-        }
+        // Only values that have been changed are saved, so registering never writes
+        load();
     }
 
     abstract T getValue();
 
-    abstract void setValue(T value);
+    /**
+     * Stages the value in the given editor. Nothing is saved until the editor is applied.
+     */
+    abstract void put(ShiftStore.Editor editor, T value);
+
+    /**
+     * Makes the value visible to readers of the {@link ShiftValueCache}
+     */
+    abstract void cache(T value);
+
+    void setValue(T value) {
+        ShiftStore.Editor editor = PERSISTENCE.edit();
+        put(editor, value);
+        editor.apply();
+        cache(value);
+    }
+
+    /**
+     * Reads the persisted value, or the default if the value has never been changed,
+     * into this ShiftPref's slot in the {@link ShiftValueCache}
+     */
+    abstract void load();
 
     boolean isValueSet() {
         return PERSISTENCE.exists(KEY);
@@ -42,9 +67,6 @@ abstract class ShiftPref <T> {
 
     void deleteValue() {
         PERSISTENCE.remove(KEY, CLASS.getName());
-    }
-
-    void setValueToDefault() {
-        setValue(DEFAULT_VALUE);
+        load();
     }
 }
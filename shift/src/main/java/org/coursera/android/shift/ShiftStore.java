@@ -0,0 +1,68 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.Map;
+
+/**
+ * Backing storage for the values of {@link ShiftValue}s.
+ * By default Shift uses {@link SharedPreferencesShiftStore}. A different store can be provided
+ * with {@link ShiftManager#initialize(android.content.Context, ShiftVisibilityClient, ShiftStore)}.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface ShiftStore {
+
+    /**
+     * Blocks until the store has read its values, so that later reads don't have to wait.
+     * Called on a background thread by
+     * {@link ShiftManager#initializeAsync(android.content.Context, ShiftVisibilityClient, Class, java.util.concurrent.Callable)}.
+     */
+    void load();
+
+    boolean exists(String key);
+
+    boolean getBoolean(String key, boolean defaultValue);
+
+    int getInt(String key, int defaultValue);
+
+    float getFloat(String key, float defaultValue);
+
+    String getString(String key, String defaultValue);
+
+    /**
+     * @return A copy of every key and value in this store
+     */
+    Map<String, ?> getAll();
+
+    /**
+     * Returns a new {@link Editor}. Nothing is written until {@link Editor#apply()} is called,
+     * and all of the changes made in one Editor are written together.
+     */
+    Editor edit();
+
+    interface Editor {
+        Editor putBoolean(String key, boolean value);
+
+        Editor putInt(String key, int value);
+
+        Editor putFloat(String key, float value);
+
+        Editor putString(String key, String value);
+
+        Editor remove(String key);
+
+        void apply();
+    }
+}
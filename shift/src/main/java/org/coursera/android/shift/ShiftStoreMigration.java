@@ -0,0 +1,57 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Map;
+
+/**
+ * Moves values saved by {@link SharedPreferencesShiftStore} into another {@link ShiftStore}.
+ * Stores call this when they are created for the first time so that switching stores does not
+ * reset the values a user has already set. The imported values are then cleared, so that a store
+ * that is created again later, e.g. after its file was deleted, doesn't get the same stale values.
+ */
+class ShiftStoreMigration {
+
+    private static final String TAG = ShiftStoreMigration.class.getCanonicalName();
+
+    static void importSharedPreferences(Context context, ShiftStore store) {
+        SharedPreferences sharedPreferences = context.getSharedPreferences(
+                SharedPreferencesShiftStore.SHARED_PREF_KEY, Context.MODE_PRIVATE);
+        Map<String, ?> values = sharedPreferences.getAll();
+        if (values.isEmpty()) {
+            return;
+        }
+        ShiftStore.Editor editor = store.edit();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(entry.getKey(), (Integer) value);
+            } else if (value instanceof Float) {
+                editor.putFloat(entry.getKey(), (Float) value);
+            } else if (value instanceof String) {
+                editor.putString(entry.getKey(), (String) value);
+            } else {
+                Log.w(TAG, "Skipping value of unsupported type for key: " + entry.getKey());
+            }
+        }
+        editor.apply();
+        sharedPreferences.edit().clear().apply();
+    }
+}
@@ -31,4 +31,16 @@ public class ShiftString extends ShiftValue {
     public String getStringValue() {
         return ShiftManager.getInstance().getValueRegistrationManager().getString(this);
     }
+
+    /**
+     * @return This value, whose observers are only told about actual changes
+     */
+    public ShiftObservable<String> observe() {
+        return new ShiftObservable<String>(this) {
+            @Override
+            String read() {
+                return getStringValue();
+            }
+        };
+    }
 }
@@ -35,4 +35,16 @@ public class ShiftStringArraySelector extends ShiftValue {
         String[] array = new String[list.size()];
         return list.toArray(array);
     }
+
+    /**
+     * @return The selected value, whose observers are only told about actual changes
+     */
+    public ShiftObservable<String> observe() {
+        return new ShiftObservable<String>(this) {
+            @Override
+            String read() {
+                return getSelectedValue();
+            }
+        };
+    }
 }
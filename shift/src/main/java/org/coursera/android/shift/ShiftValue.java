@@ -21,6 +21,15 @@ public class ShiftValue implements Comparable<ShiftValue> {
     public final String FEATURE;
     public final String AUTHOR;
 
+    /**
+     * Dense index assigned by {@link ShiftValueRegistrationManagerImpl} on registration.
+     * The value of this ShiftValue lives at this index in the {@link ShiftValueCache}.
+     * This is the slot given by the first registration manager to register it, normally the
+     * one owned by {@link ShiftManager}; any other keeps its own slot for it. Set once, under
+     * that manager's lock; volatile so that readers on other threads, which don't lock, see it.
+     */
+    volatile int mSlot = ShiftValueCache.NO_SLOT;
+
     /**
      * There are cases where we want to use a ShiftValue purely for the sake of having
      * a listener to subscribe to
@@ -0,0 +1,28 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.List;
+
+/**
+ * A {@link ShiftValueListener} that is told about every ShiftValue changed by a
+ * {@link ShiftEditor} in a single call, instead of one call per ShiftValue.
+ */
+public interface ShiftValueBatchListener extends ShiftValueListener {
+
+    /**
+     * @param shiftValues The ShiftValues this listener is subscribed to that were updated together
+     */
+    void onShiftValuesUpdated(List<ShiftValue> shiftValues);
+}
@@ -0,0 +1,93 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.Arrays;
+
+/**
+ * In-memory copy of the registered values, owned by {@link ShiftValueRegistrationManagerImpl}.
+ * Every {@link ShiftPref} is given a dense slot index when it is created and its value lives at
+ * that index in one of the tables below, so reading a value is a single array load.
+ * {@link ShiftPref#setValue(Object)} writes through to the table and to persistence.
+ *
+ * Reads are unsynchronized. Writes and growth are synchronized and finish by re-publishing the
+ * volatile table reference so that readers on other threads see the new element.
+ */
+class ShiftValueCache {
+
+    static final int NO_SLOT = -1;
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private int mSize;
+    private volatile boolean[] mBooleans = new boolean[INITIAL_CAPACITY];
+    private volatile int[] mInts = new int[INITIAL_CAPACITY];
+    private volatile float[] mFloats = new float[INITIAL_CAPACITY];
+    private volatile Object[] mObjects = new Object[INITIAL_CAPACITY];
+
+    synchronized int newSlot() {
+        if (mSize == mBooleans.length) {
+            int capacity = mSize * 2;
+            mBooleans = Arrays.copyOf(mBooleans, capacity);
+            mInts = Arrays.copyOf(mInts, capacity);
+            mFloats = Arrays.copyOf(mFloats, capacity);
+            mObjects = Arrays.copyOf(mObjects, capacity);
+        }
+        return mSize++;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    boolean getBoolean(int slot) {
+        return mBooleans[slot];
+    }
+
+    synchronized void setBoolean(int slot, boolean value) {
+        boolean[] booleans = mBooleans;
+        booleans[slot] = value;
+        mBooleans = booleans;
+    }
+
+    int getInt(int slot) {
+        return mInts[slot];
+    }
+
+    synchronized void setInt(int slot, int value) {
+        int[] ints = mInts;
+        ints[slot] = value;
+        mInts = ints;
+    }
+
+    float getFloat(int slot) {
+        return mFloats[slot];
+    }
+
+    synchronized void setFloat(int slot, float value) {
+        float[] floats = mFloats;
+        floats[slot] = value;
+        mFloats = floats;
+    }
+
+    Object getObject(int slot) {
+        return mObjects[slot];
+    }
+
+    synchronized void setObject(int slot, Object value) {
+        Object[] objects = mObjects;
+        objects[slot] = value;
+        mObjects = objects;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+import androidx.core.util.Pair;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws category headers above the first ShiftValue of each category, and keeps the header of
+ * the category at the top of the list pinned until the next header pushes it off.
+ *
+ * Headers are drawn rather than laid out, so the adapter's positions are the ShiftValues' own
+ * and no header views are inflated. Each title's text layout is built once per list width.
+ */
+class ShiftValueCategoryHeaderDecoration extends RecyclerView.ItemDecoration {
+
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBackgroundPaint = new Paint();
+    private final int mPaddingLeft;
+    private final int mPaddingRight;
+    private final int mPaddingTop;
+    private final int mHeaderHeight;
+
+    private String[] mTitles = new String[0];
+    // Sorted adapter positions of the first ShiftValue of each category
+    private int[] mFirstPositions = new int[0];
+
+    private final Map<String, StaticLayout> mTitleLayouts = new HashMap<>();
+    private int mTitleLayoutWidth = -1;
+
+    public ShiftValueCategoryHeaderDecoration(Context context) {
+        Resources resources = context.getResources();
+        mTextPaint.setTextSize(resources.getDimension(R.dimen.category_title_size));
+        mTextPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        mTextPaint.setColor(ContextCompat.getColor(context, R.color.category_color));
+        mBackgroundPaint.setColor(ContextCompat.getColor(context, R.color.view_pager_background));
+
+        mPaddingLeft = resources.getDimensionPixelSize(R.dimen.category_padding_left);
+        mPaddingRight = resources.getDimensionPixelSize(R.dimen.category_padding_right);
+        mPaddingTop = resources.getDimensionPixelSize(R.dimen.category_padding_top);
+        Paint.FontMetricsInt metrics = mTextPaint.getFontMetricsInt();
+        mHeaderHeight = mPaddingTop + metrics.descent - metrics.ascent
+                + resources.getDimensionPixelSize(R.dimen.category_padding_bottom);
+    }
+
+    /**
+     * @param categories Each category and the adapter position of its first ShiftValue,
+     *                   in order. See {@link ShiftValueIndex.Snapshot#CATEGORIES}
+     */
+    public void setCategories(List<Pair<String, Integer>> categories) {
+        String[] titles = new String[categories.size()];
+        int[] firstPositions = new int[categories.size()];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = categories.get(i).first;
+            firstPositions[i] = categories.get(i).second;
+        }
+        mTitles = titles;
+        mFirstPositions = firstPositions;
+    }
+
+    /**
+     * @return The index of the category the given adapter position is in
+     */
+    private int sectionIndex(int position) {
+        int index = Arrays.binarySearch(mFirstPositions, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Override
+    public void getItemOffsets(Rect outRect, View view, RecyclerView parent,
+                               RecyclerView.State state) {
+        int position = parent.getChildAdapterPosition(view);
+        if (position != RecyclerView.NO_POSITION
+                && Arrays.binarySearch(mFirstPositions, position) >= 0) {
+            outRect.top = mHeaderHeight;
+        }
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        if (mFirstPositions.length == 0) {
+            return;
+        }
+        int width = parent.getWidth();
+        if (width != mTitleLayoutWidth) {
+            mTitleLayouts.clear();
+            mTitleLayoutWidth = width;
+        }
+
+        int stickySection = -1;
+        int stickyTop = 0;
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            int position = parent.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            int section = sectionIndex(position);
+            if (section < 0) {
+                continue;
+            }
+            boolean firstInSection = mFirstPositions[section] == position;
+            if (stickySection == -1) {
+                stickySection = section;
+            }
+            if (!firstInSection) {
+                continue;
+            }
+            int headerTop = child.getTop() + Math.round(child.getTranslationY()) - mHeaderHeight;
+            drawHeader(c, width, section, headerTop);
+            if (section == stickySection && headerTop >= 0) {
+                // Its own header is already fully in view
+                stickySection = -2;
+            } else if (section == stickySection + 1 && headerTop < mHeaderHeight) {
+                // The next header pushes the pinned one up
+                stickyTop = headerTop - mHeaderHeight;
+            }
+        }
+        if (stickySection >= 0) {
+            drawHeader(c, width, stickySection, stickyTop);
+        }
+    }
+
+    private void drawHeader(Canvas c, int width, int section, int top) {
+        c.drawRect(0, top, width, top + mHeaderHeight, mBackgroundPaint);
+        int saveCount = c.save();
+        c.translate(mPaddingLeft, top + mPaddingTop);
+        getTitleLayout(mTitles[section], width).draw(c);
+        c.restoreToCount(saveCount);
+    }
+
+    private StaticLayout getTitleLayout(String title, int width) {
+        StaticLayout layout = mTitleLayouts.get(title);
+        if (layout == null) {
+            int textWidth = Math.max(0, width - mPaddingLeft - mPaddingRight);
+            layout = StaticLayout.Builder.obtain(title, 0, title.length(), mTextPaint, textWidth)
+                    .setMaxLines(1)
+                    .setEllipsize(TextUtils.TruncateAt.END)
+                    .setIncludePad(false)
+                    .build();
+            mTitleLayouts.put(title, layout);
+        }
+        return layout;
+    }
+}
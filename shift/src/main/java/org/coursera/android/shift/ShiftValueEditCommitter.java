@@ -0,0 +1,111 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Debounces edits made in the values menu, per ShiftValue.
+ *
+ * Each edit replaces the pending one for its ShiftValue and restarts that ShiftValue's idle
+ * timer, so only the last value typed is written and listeners are notified once.
+ * Pending edits can also be committed right away, e.g. on an IME action or focus loss.
+ * Must be used from the thread of the given Handler.
+ */
+class ShiftValueEditCommitter {
+
+    static final long DEFAULT_DELAY_MILLIS = 500;
+
+    private final Handler mHandler;
+    private final long mDelayMillis;
+    private final Map<ShiftValue, PendingEdit> mPending = new HashMap<>();
+
+    ShiftValueEditCommitter(Handler handler, long delayMillis) {
+        mHandler = handler;
+        mDelayMillis = delayMillis;
+    }
+
+    /**
+     * Schedules the commit for the given ShiftValue, replacing any edit still pending for it
+     *
+     * @param text The text the edit was made from
+     */
+    void post(ShiftValue key, String text, Runnable commit) {
+        PendingEdit pending = mPending.get(key);
+        if (pending == null) {
+            pending = new PendingEdit(key);
+            mPending.put(key, pending);
+        } else {
+            mHandler.removeCallbacks(pending);
+        }
+        pending.mText = text;
+        pending.mCommit = commit;
+        mHandler.postDelayed(pending, mDelayMillis);
+    }
+
+    boolean isPending(ShiftValue key) {
+        return mPending.containsKey(key);
+    }
+
+    /**
+     * @return The text of the edit pending for the given ShiftValue, or null if there is none
+     */
+    String getPendingText(ShiftValue key) {
+        PendingEdit pending = mPending.get(key);
+        return pending != null ? pending.mText : null;
+    }
+
+    /**
+     * Commits the edit pending for the given ShiftValue now, if there is one
+     *
+     * @return Whether there was one
+     */
+    boolean flush(ShiftValue key) {
+        PendingEdit pending = mPending.get(key);
+        if (pending == null) {
+            return false;
+        }
+        mHandler.removeCallbacks(pending);
+        pending.run();
+        return true;
+    }
+
+    void flushAll() {
+        List<ShiftValue> keys = new ArrayList<>(mPending.keySet());
+        for (ShiftValue key : keys) {
+            flush(key);
+        }
+    }
+
+    private class PendingEdit implements Runnable {
+        private final ShiftValue mKey;
+        private String mText;
+        private Runnable mCommit;
+
+        PendingEdit(ShiftValue key) {
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            mPending.remove(mKey);
+            mCommit.run();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import androidx.core.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registered ShiftValues in the order the values menu shows them, split into categories.
+ *
+ * Each registration is inserted in place, so nothing is sorted when the menu opens.
+ * {@link #snapshot()} hands out read-only copies that are reused until the next registration.
+ */
+class ShiftValueIndex {
+
+    private final List<ShiftValue> mValues = new ArrayList<>();
+    // Category names in order, and the position of the first value of each in mValues
+    private final List<String> mCategories = new ArrayList<>();
+    private int[] mCategoryStarts = new int[16];
+
+    private Snapshot mSnapshot;
+
+    synchronized void add(ShiftValue value) {
+        int position = Collections.binarySearch(mValues, value);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        mValues.add(position, value);
+
+        int category = Collections.binarySearch(mCategories, value.CATEGORY);
+        if (category < 0) {
+            category = -category - 1;
+            mCategories.add(category, value.CATEGORY);
+            if (mCategories.size() > mCategoryStarts.length) {
+                mCategoryStarts = Arrays.copyOf(mCategoryStarts, mCategoryStarts.length * 2);
+            }
+            System.arraycopy(mCategoryStarts, category, mCategoryStarts, category + 1,
+                    mCategories.size() - 1 - category);
+            mCategoryStarts[category] = position;
+        }
+        for (int i = category + 1; i < mCategories.size(); i++) {
+            mCategoryStarts[i]++;
+        }
+        mSnapshot = null;
+    }
+
+    synchronized Snapshot snapshot() {
+        if (mSnapshot == null) {
+            List<Pair<String, Integer>> categories = new ArrayList<>(mCategories.size());
+            for (int i = 0; i < mCategories.size(); i++) {
+                categories.add(new Pair<>(mCategories.get(i), mCategoryStarts[i]));
+            }
+            mSnapshot = new Snapshot(Collections.unmodifiableList(new ArrayList<>(mValues)),
+                    Collections.unmodifiableList(categories));
+        }
+        return mSnapshot;
+    }
+
+    static class Snapshot {
+        /**
+         * Every registered ShiftValue, sorted by category, then feature, then author
+         */
+        final List<ShiftValue> VALUES;
+        /**
+         * Each category and the position in {@link #VALUES} of its first ShiftValue
+         */
+        final List<Pair<String, Integer>> CATEGORIES;
+
+        Snapshot(List<ShiftValue> values, List<Pair<String, Integer>> categories) {
+            VALUES = values;
+            CATEGORIES = categories;
+        }
+
+        /**
+         * @param slots The slots of the ShiftValues to keep
+         * @param registrationManager The registration manager that gave them those slots
+         * @return A snapshot of only the given ShiftValues, without the categories left empty
+         */
+        Snapshot filter(BitSet slots, ShiftValueRegistrationManagerImpl registrationManager) {
+            List<ShiftValue> values = new ArrayList<>(slots.cardinality());
+            List<Pair<String, Integer>> categories = new ArrayList<>();
+            int category = 0;
+            int lastAddedCategory = -1;
+            for (int i = 0; i < VALUES.size(); i++) {
+                while (category + 1 < CATEGORIES.size() && CATEGORIES.get(category + 1).second <= i) {
+                    category++;
+                }
+                ShiftValue value = VALUES.get(i);
+                if (slots.get(registrationManager.getSlot(value))) {
+                    if (category != lastAddedCategory) {
+                        categories.add(new Pair<>(CATEGORIES.get(category).first, values.size()));
+                        lastAddedCategory = category;
+                    }
+                    values.add(value);
+                }
+            }
+            return new Snapshot(Collections.unmodifiableList(values),
+                    Collections.unmodifiableList(categories));
+        }
+    }
+}
@@ -14,9 +14,12 @@
 package org.coursera.android.shift;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.InputType;
 import android.text.TextWatcher;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -29,10 +32,12 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.widget.SwitchCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -44,32 +49,63 @@ class ShiftValueRecyclerViewAdapter extends RecyclerView.Adapter<ShiftValueRecyc
     public static final int TYPE_FLOAT = 3;
     public static final int TYPE_STRING_SELECTOR = 4;
 
+    // Payload for rows whose ShiftValue was given a new value
+    static final Object PAYLOAD_VALUE_CHANGED = new Object();
+
     private final Context mContext;
-    private Map<ShiftValue, ShiftPref> mShiftValueToPref;
-    private List<ShiftValue> mData;
+    private final ShiftValueRegistrationManagerImpl mRegistrationManager;
+    private final AsyncListDiffer<ShiftValue> mDiffer;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ShiftValueEditCommitter mEditCommitter;
+    private ShiftViewPoolFragment mViewPool;
+    // Spinner adapters of string selector rows, kept across binds
+    private final Map<ShiftValue, SelectorAdapter> mSelectorAdapters = new HashMap<>();
     private Toast numberOverflowErrorToast;
 
-    public void add(ShiftValue s, int position) {
-        position = position == -1 ? getItemCount() : position;
-        mData.add(position, s);
-        notifyItemInserted(position);
-    }
+    /*
+        Rows are only added or removed by the diff. Value changes are reported by mValueListener
+        instead, so that they only rebind the rows that changed.
+     */
+    private static final DiffUtil.ItemCallback<ShiftValue> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<ShiftValue>() {
+                @Override
+                public boolean areItemsTheSame(ShiftValue oldValue, ShiftValue newValue) {
+                    return oldValue == newValue;
+                }
+
+                @Override
+                public boolean areContentsTheSame(ShiftValue oldValue, ShiftValue newValue) {
+                    return true;
+                }
+            };
 
-    public void remove(int position) {
-        if (position < getItemCount()) {
-            mData.remove(position);
-            notifyItemRemoved(position);
+    private final ShiftValueBatchListener mValueListener = new ShiftValueBatchListener() {
+        @Override
+        public void onShiftValuesUpdated(List<ShiftValue> shiftValues) {
+            onValuesChanged(shiftValues);
         }
-    }
 
-    static class ShiftValueViewHolder extends RecyclerView.ViewHolder {
+        @Override
+        public void onShiftValuesUpdated(ShiftValue shiftValue) {
+            onValuesChanged(Collections.singletonList(shiftValue));
+        }
+    };
+
+    /**
+     * Listens to its own row's widgets. The listeners are set once, when the ViewHolder is
+     * created, and look the row up through the adapter it is currently bound by.
+     */
+    static class ShiftValueViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener,
+            CompoundButton.OnCheckedChangeListener, TextWatcher, View.OnFocusChangeListener,
+            TextView.OnEditorActionListener, AdapterView.OnItemSelectedListener {
         public final TextView title;
         public final SwitchCompat onOrOff;
         public final EditText editString;
         public final EditText editInt;
         public final EditText editFloat;
         public final Spinner spinnerStringSelector;
-        public TextWatcher textWatcher;
+        // Set while bind updates the widgets, so that their callbacks are not taken as edits
+        boolean binding;
 
         public ShiftValueViewHolder(View view) {
             super(view);
@@ -79,25 +115,168 @@ class ShiftValueRecyclerViewAdapter extends RecyclerView.Adapter<ShiftValueRecyc
             editInt = (EditText) view.findViewById(R.id.feature_int);
             editFloat = (EditText) view.findViewById(R.id.feature_float);
             spinnerStringSelector = (Spinner) view.findViewById(R.id.feature_string_selector);
+
+            if (title != null) {
+                title.setOnClickListener(this);
+            }
+            if (onOrOff != null) {
+                onOrOff.setOnCheckedChangeListener(this);
+            }
+            EditText editText = editString != null ? editString : editInt != null ? editInt : editFloat;
+            if (editText != null) {
+                editText.addTextChangedListener(this);
+                editText.setOnFocusChangeListener(this);
+                editText.setOnEditorActionListener(this);
+            }
+            if (editFloat != null) {
+                editFloat.setInputType(InputType.TYPE_NUMBER_FLAG_DECIMAL);
+            }
+            if (spinnerStringSelector != null) {
+                spinnerStringSelector.setOnItemSelectedListener(this);
+            }
+        }
+
+        /**
+         * @return The adapter this row is bound by, or null if the change did not come from the user
+         */
+        private ShiftValueRecyclerViewAdapter getBoundAdapter() {
+            if (binding || getBindingAdapterPosition() == RecyclerView.NO_POSITION) {
+                return null;
+            }
+            return (ShiftValueRecyclerViewAdapter) getBindingAdapter();
+        }
+
+        @Override
+        public void onClick(View v) {
+            ShiftValueRecyclerViewAdapter adapter = getBoundAdapter();
+            if (adapter != null) {
+                adapter.onTitleClicked(getBindingAdapterPosition());
+            }
+        }
+
+        @Override
+        public void onCheckedChanged(CompoundButton compoundButton, boolean isChecked) {
+            ShiftValueRecyclerViewAdapter adapter = getBoundAdapter();
+            if (adapter != null) {
+                adapter.onCheckedChanged(getBindingAdapterPosition(), isChecked);
+            }
+        }
+
+        @Override
+        public void beforeTextChanged(CharSequence charSequence, int i, int i2, int i3) {
+
+        }
+
+        @Override
+        public void onTextChanged(CharSequence charSequence, int i, int i2, int i3) {
+
+        }
+
+        @Override
+        public void afterTextChanged(Editable editable) {
+            ShiftValueRecyclerViewAdapter adapter = getBoundAdapter();
+            if (adapter != null) {
+                adapter.onTextEdited(getBindingAdapterPosition(), editable.toString());
+            }
+        }
+
+        @Override
+        public void onFocusChange(View v, boolean hasFocus) {
+            ShiftValueRecyclerViewAdapter adapter = getBoundAdapter();
+            if (adapter != null && !hasFocus) {
+                adapter.onEditDone(getBindingAdapterPosition());
+            }
+        }
+
+        @Override
+        public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
+            ShiftValueRecyclerViewAdapter adapter = getBoundAdapter();
+            if (adapter != null) {
+                adapter.onEditDone(getBindingAdapterPosition());
+            }
+            // Let the IME action itself happen too
+            return false;
+        }
+
+        @Override
+        public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+            ShiftValueRecyclerViewAdapter adapter = getBoundAdapter();
+            if (adapter != null) {
+                adapter.onSelectorItemSelected(getBindingAdapterPosition(), position);
+            }
+        }
+
+        @Override
+        public void onNothingSelected(AdapterView<?> parent) {
+            //Do nothing
         }
     }
 
-    public ShiftValueRecyclerViewAdapter(Context context, Map<ShiftValue, ShiftPref> shiftValueToPref) {
+    /**
+     * @param editCommitDelayMillis How long a text field must be idle before its value is saved
+     */
+    public ShiftValueRecyclerViewAdapter(Context context, List<ShiftValue> shiftValues,
+                                         ShiftValueRegistrationManagerImpl registrationManager,
+                                         long editCommitDelayMillis) {
         mContext = context;
-        if (shiftValueToPref != null) {
-            mShiftValueToPref = shiftValueToPref;
-            List<ShiftValue> keys = new ArrayList<ShiftValue>(shiftValueToPref.keySet());
-            Collections.sort(keys);
-            mData = keys;
-        } else {
-            mData = new ArrayList<ShiftValue>();
+        mRegistrationManager = registrationManager;
+        mEditCommitter = new ShiftValueEditCommitter(mMainHandler, editCommitDelayMillis);
+        setHasStableIds(true);
+        mDiffer = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        // The first list is applied right away, without diffing
+        setShiftValues(shiftValues, null);
+    }
+
+    /**
+     * Shows the given ShiftValues instead, e.g. the results of a search. Only the rows that
+     * were added or removed are updated.
+     *
+     * @param commitCallback Run once the new rows are shown, may be null
+     */
+    void setShiftValues(List<ShiftValue> shiftValues, Runnable commitCallback) {
+        mDiffer.submitList(shiftValues, commitCallback);
+    }
+
+    /**
+     * Rebinds the rows of the given ShiftValues, found by binary search in the sorted rows
+     */
+    private void onValuesChanged(List<ShiftValue> shiftValues) {
+        List<ShiftValue> rows = mDiffer.getCurrentList();
+        for (ShiftValue shiftValue : shiftValues) {
+            int position = Collections.binarySearch(rows, shiftValue);
+            if (position >= 0 && rows.get(position) == shiftValue) {
+                notifyItemChanged(position, PAYLOAD_VALUE_CHANGED);
+            }
         }
     }
 
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        // Posted, so that rows are not changed while a row's own widget is reporting an edit
+        ShiftManager.getInstance().subscribeToUpdatesForAllShiftValues(mValueListener,
+                ShiftDispatchMode.MAIN_THREAD);
+        // Catch up on anything that changed while detached
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_VALUE_CHANGED);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        mEditCommitter.flushAll();
+        ShiftManager.getInstance().unsubscribeToUpdatesForAllShiftValues(mValueListener);
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
+    private ShiftValue getShiftValue(int position) {
+        return mDiffer.getCurrentList().get(position);
+    }
+
     @Override
     public int getItemViewType(int position) {
-        ShiftValue key = mData.get(position);
-        ShiftPref type = mShiftValueToPref.get(key);
+        return getViewType(mRegistrationManager.getPref(getShiftValue(position)));
+    }
+
+    static int getViewType(ShiftPref type) {
         if (type instanceof BooleanPreference) {
             return TYPE_BOOLEAN;
         } else if (type instanceof StringPreference) {
@@ -111,167 +290,249 @@ class ShiftValueRecyclerViewAdapter extends RecyclerView.Adapter<ShiftValueRecyc
         }
     }
 
-    public ShiftValueViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        View view;
+    /**
+     * @return The layout of rows of the given view type, or 0 if there is none
+     */
+    static int getLayout(int viewType) {
         switch (viewType) {
             case (TYPE_BOOLEAN):
-                view = LayoutInflater.from(mContext).inflate(R.layout.boolean_feature, parent, false);
-                break;
+                return R.layout.boolean_feature;
             case (TYPE_STRING):
-                view = LayoutInflater.from(mContext).inflate(R.layout.string_feature, parent, false);
-                break;
+                return R.layout.string_feature;
             case (TYPE_INT):
-                view = LayoutInflater.from(mContext).inflate(R.layout.int_feature, parent, false);
-                break;
+                return R.layout.int_feature;
             case (TYPE_FLOAT):
-                view = LayoutInflater.from(mContext).inflate(R.layout.float_feature, parent, false);
-                break;
+                return R.layout.float_feature;
             case (TYPE_STRING_SELECTOR):
-                view = LayoutInflater.from(mContext).inflate(R.layout.string_selector, parent, false);
-                break;
+                return R.layout.string_selector;
             default:
-                view = new View(mContext);
+                return 0;
+        }
+    }
+
+    /**
+     * Rows will be created from the views pre-inflated by the given fragment while it has any
+     */
+    void setViewPool(ShiftViewPoolFragment viewPool) {
+        mViewPool = viewPool;
+    }
+
+    public ShiftValueViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = mViewPool != null ? mViewPool.takePreInflatedView(viewType) : null;
+        if (view == null) {
+            int layout = getLayout(viewType);
+            view = layout != 0
+                    ? LayoutInflater.from(mContext).inflate(layout, parent, false)
+                    : new View(mContext);
         }
         return new ShiftValueViewHolder(view);
     }
 
     @Override
-    public void onBindViewHolder(ShiftValueViewHolder holder, final int position) {
+    public void onBindViewHolder(ShiftValueViewHolder holder, int position) {
+        ShiftValue key = getShiftValue(position);
         int viewType = getItemViewType(position);
-        final ShiftValue key = mData.get(position);
+        /*
+            A row that is still showing its own pending edit is being typed in. Leave the edit
+            pending and the text as it is, so that the cursor does not move.
+         */
+        boolean editing = isShowingPendingEdit(holder, key, viewType);
+        if (!editing) {
+            // Bind the latest value, not the one from before a pending edit
+            mEditCommitter.flush(key);
+        }
+        Object value = mRegistrationManager.getPref(key).getValue();
+        holder.binding = true;
         holder.title.setText(key.FEATURE);
-        holder.title.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                Toast.makeText(mContext, "Author: " + key.AUTHOR, Toast.LENGTH_SHORT)
-                        .show();
-            }
-        });
         switch (viewType) {
             case TYPE_BOOLEAN:
-                final BooleanPreference boolPref = (BooleanPreference) mShiftValueToPref.get(key);
-                holder.onOrOff.setOnCheckedChangeListener(null);
-                holder.onOrOff.setChecked(boolPref.getValue());
-                holder.onOrOff.setOnCheckedChangeListener(
-                        new CompoundButton.OnCheckedChangeListener() {
-                            @Override
-                            public void onCheckedChanged(CompoundButton compoundButton, boolean b) {
-                                boolPref.setValue(!boolPref.getValue());
-                                ShiftManager.getInstance().notifyShiftListeners(key);
-                            }
-                        });
+                holder.onOrOff.setChecked((Boolean) value);
                 break;
             case TYPE_STRING:
-                final StringPreference stringPref = (StringPreference) mShiftValueToPref.get(key);
-                holder.editString.removeTextChangedListener(holder.textWatcher);
-                holder.editString.setText(stringPref.getValue());
-                holder.textWatcher = new TextWatcher() {
-                    @Override
-                    public void beforeTextChanged(CharSequence charSequence, int i, int i2, int i3) {
-
-                    }
-
-                    @Override
-                    public void onTextChanged(CharSequence charSequence, int i, int i2, int i3) {
-
-                    }
+                if (!editing) {
+                    holder.editString.setText((String) value);
+                }
+                break;
+            case TYPE_INT:
+                if (!editing) {
+                    holder.editInt.setText(String.valueOf(value));
+                }
+                break;
+            case TYPE_FLOAT:
+                if (!editing) {
+                    holder.editFloat.setText(String.valueOf(value));
+                }
+                break;
+            case TYPE_STRING_SELECTOR:
+                StringListSelector selector = (StringListSelector) value;
+                SelectorAdapter adapter = getSelectorAdapter(key, selector.getList());
+                if (holder.spinnerStringSelector.getAdapter() != adapter) {
+                    holder.spinnerStringSelector.setAdapter(adapter);
+                }
+                if (holder.spinnerStringSelector.getSelectedItemPosition() != selector.selectedIndex) {
+                    holder.spinnerStringSelector.setSelection(selector.selectedIndex, false);
+                }
+        }
+        holder.binding = false;
+    }
 
-                    @Override
-                    public void afterTextChanged(Editable editable) {
-                        stringPref.setValue(editable.toString());
-                        ShiftManager.getInstance().notifyShiftListeners(key);
-                    }
-                };
-                holder.editString.addTextChangedListener(holder.textWatcher);
+    private boolean isShowingPendingEdit(ShiftValueViewHolder holder, ShiftValue key, int viewType) {
+        String pendingText = mEditCommitter.getPendingText(key);
+        if (pendingText == null) {
+            return false;
+        }
+        EditText editText;
+        switch (viewType) {
+            case TYPE_STRING:
+                editText = holder.editString;
                 break;
             case TYPE_INT:
-                final IntPreference intPref = (IntPreference) mShiftValueToPref.get(key);
-                holder.editInt.removeTextChangedListener(holder.textWatcher);
-                holder.editInt.setText(intPref.getValue() + "");
-                holder.textWatcher = new TextWatcher() {
-                    @Override
-                    public void beforeTextChanged(CharSequence charSequence, int i, int i2, int i3) {
+                editText = holder.editInt;
+                break;
+            case TYPE_FLOAT:
+                editText = holder.editFloat;
+                break;
+            default:
+                return false;
+        }
+        return pendingText.equals(editText.getText().toString());
+    }
 
-                    }
+    void onTitleClicked(int position) {
+        Toast.makeText(mContext, "Author: " + getShiftValue(position).AUTHOR, Toast.LENGTH_SHORT)
+                .show();
+    }
 
-                    @Override
-                    public void onTextChanged(CharSequence charSequence, int i, int i2, int i3) {
+    void onCheckedChanged(int position, boolean isChecked) {
+        ShiftValue key = getShiftValue(position);
+        ((BooleanPreference) mRegistrationManager.getPref(key)).setValue(isChecked);
+        ShiftManager.getInstance().notifyShiftListeners(key);
+    }
 
+    /**
+     * Parses the text of a string, int or float row and saves it once the row has been idle
+     * for the commit delay
+     */
+    void onTextEdited(int position, String text) {
+        final ShiftValue key = getShiftValue(position);
+        final ShiftPref pref = mRegistrationManager.getPref(key);
+        final Object value;
+        try {
+            switch (getViewType(pref)) {
+                case TYPE_STRING:
+                    value = text;
+                    break;
+                case TYPE_INT:
+                    if (text.isEmpty()) {
+                        return;
                     }
-
-                    @Override
-                    public void afterTextChanged(Editable editable) {
-                        if (!editable.toString().isEmpty()) {
-                            Integer value;
-                            try {
-                                value = Integer.valueOf(editable.toString());
-                                intPref.setValue(value);
-                                ShiftManager.getInstance().notifyShiftListeners(key);
-                            } catch (NumberFormatException error) {
-                                showNumberOverFlowErrorToast();
-                            }
-                        }
+                    value = Integer.valueOf(text);
+                    break;
+                case TYPE_FLOAT:
+                    if (text.isEmpty()) {
+                        return;
                     }
-                };
-                holder.editInt.addTextChangedListener(holder.textWatcher);
-                break;
-            case TYPE_FLOAT:
-                final FloatPreference floatPref = (FloatPreference) mShiftValueToPref.get(key);
-                holder.editFloat.removeTextChangedListener(holder.textWatcher);
-                holder.editFloat.setText(floatPref.getValue() + "");
-                holder.textWatcher = new TextWatcher() {
-                    @Override
-                    public void beforeTextChanged(CharSequence charSequence, int i, int i2, int i3) {
+                    value = Float.valueOf(text);
+                    break;
+                default:
+                    return;
+            }
+        } catch (NumberFormatException error) {
+            showNumberOverFlowErrorToast();
+            return;
+        }
+        mEditCommitter.post(key, text, new Runnable() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run() {
+                pref.setValue(value);
+                ShiftManager.getInstance().notifyShiftListeners(key);
+            }
+        });
+    }
 
-                    }
+    /**
+     * Saves the row's pending edit right away, e.g. on focus loss or an IME action
+     */
+    void onEditDone(int position) {
+        mEditCommitter.flush(getShiftValue(position));
+    }
 
-                    @Override
-                    public void onTextChanged(CharSequence charSequence, int i, int i2, int i3) {
+    void onSelectorItemSelected(int position, int selectedIndex) {
+        ShiftValue key = getShiftValue(position);
+        StringListSelectorPreference pref = (StringListSelectorPreference) mRegistrationManager.getPref(key);
+        // Spinners also report selections made by bind, which are already saved
+        if (selectedIndex != pref.getValue().selectedIndex) {
+            pref.setSelectedIndex(selectedIndex);
+            ShiftManager.getInstance().notifyShiftListeners(key);
+        }
+    }
 
-                    }
+    /**
+     * Returns the spinner adapter of the given ShiftValue's row, only creating a new one
+     * if its list of values changed
+     */
+    private SelectorAdapter getSelectorAdapter(ShiftValue key, List<String> values) {
+        SelectorAdapter adapter = mSelectorAdapters.get(key);
+        if (adapter == null || !adapter.VALUES.equals(values)) {
+            adapter = new SelectorAdapter(mContext, values);
+            mSelectorAdapters.put(key, adapter);
+        }
+        return adapter;
+    }
 
-                    @Override
-                    public void afterTextChanged(Editable editable) {
-                        if (!editable.toString().isEmpty()) {
-                            try {
-                                Float value = Float.valueOf(editable.toString());
-                                floatPref.setValue(value);
-                                ShiftManager.getInstance().notifyShiftListeners(key);
-                            } catch (NumberFormatException error) {
-                                showNumberOverFlowErrorToast();
-                            }
-                        }
-                    }
-                };
-                holder.editFloat.setInputType(InputType.TYPE_NUMBER_FLAG_DECIMAL);
-                holder.editFloat.addTextChangedListener(holder.textWatcher);
-                break;
-            case TYPE_STRING_SELECTOR:
-                final StringListSelectorPreference stringSelectorPref = (StringListSelectorPreference) mShiftValueToPref.get(key);
-                List<String> values = stringSelectorPref.getValue().getList();
-                int selectedIndex = stringSelectorPref.getValue().selectedIndex;
-                ArrayAdapter<String> adapter = new ArrayAdapter<String>(mContext,android.R.layout.simple_spinner_item,values);
-                adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-                holder.spinnerStringSelector.setAdapter(adapter);
-                holder.spinnerStringSelector.setSelection(selectedIndex);
-                holder.spinnerStringSelector.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-                    @Override
-                    public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                            stringSelectorPref.setSelectedIndex(position);
-                            ShiftManager.getInstance().notifyShiftListeners(key);
-                    }
+    static class SelectorAdapter extends ArrayAdapter<String> {
+        final List<String> VALUES;
 
-                    @Override
-                    public void onNothingSelected(AdapterView<?> parent) {
-                        //Do nothing
-                    }
-                });
+        SelectorAdapter(Context context, List<String> values) {
+            super(context, android.R.layout.simple_spinner_item, values);
+            setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+            VALUES = values;
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(ShiftValueViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || !showsCurrentValue(holder, position)) {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    /**
+     * Whether the row's widget already shows its ShiftValue's value, e.g. because the change
+     * came from typing into that row. Rebinding it would move the cursor.
+     */
+    private boolean showsCurrentValue(ShiftValueViewHolder holder, int position) {
+        Object value = mRegistrationManager.getPref(getShiftValue(position)).getValue();
+        try {
+            switch (getItemViewType(position)) {
+                case TYPE_BOOLEAN:
+                    return holder.onOrOff.isChecked() == (Boolean) value;
+                case TYPE_STRING:
+                    return holder.editString.getText().toString().equals(value);
+                case TYPE_INT:
+                    return Integer.valueOf(holder.editInt.getText().toString()).equals(value);
+                case TYPE_FLOAT:
+                    return Float.valueOf(holder.editFloat.getText().toString()).equals(value);
+                case TYPE_STRING_SELECTOR:
+                    return holder.spinnerStringSelector.getSelectedItemPosition()
+                            == ((StringListSelector) value).selectedIndex;
+                default:
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
         }
     }
 
+    @Override
+    public long getItemId(int position) {
+        return mRegistrationManager.getSlot(getShiftValue(position));
+    }
+
     @Override
     public int getItemCount() {
-        return mData.size();
+        return mDiffer.getCurrentList().size();
     }
 
     private void showNumberOverFlowErrorToast() {
@@ -17,10 +17,10 @@ package org.coursera.android.shift;
 import androidx.core.util.Pair;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,182 +31,202 @@ import java.util.Set;
  */
 class ShiftValueRegistrationManagerImpl implements ShiftValueRegistrationManager {
 
-    private Map<ShiftValue, BooleanPreference> mBooleanMap = new HashMap<ShiftValue, BooleanPreference>();
-    private Map<ShiftValue, IntPreference> mIntMap = new HashMap<ShiftValue, IntPreference>();
-    private Map<ShiftValue, StringPreference> mStringMap = new HashMap<ShiftValue, StringPreference>();
-    private Map<ShiftValue, FloatPreference> mFloatMap = new HashMap<ShiftValue, FloatPreference>();
-    private Map<ShiftValue, StringListSelectorPreference> mStringArraySelectorMap
-            = new HashMap<ShiftValue, StringListSelectorPreference>();
+    private static final int INITIAL_CAPACITY = 32;
+
+    /*
+        Both tables are indexed by the slot the ShiftValue was given on registration
+        (see ShiftValue#mSlot). They are only grown while holding the lock and are
+        published through the volatile fields so that readers never need to lock.
+     */
+    private volatile ShiftValue[] mShiftValues = new ShiftValue[INITIAL_CAPACITY];
+    private volatile ShiftPref[] mPrefs = new ShiftPref[INITIAL_CAPACITY];
+    private int mCount;
+
+    // Slots of the ShiftValues whose mSlot is the one given by another registration manager
+    private final Map<ShiftValue, Integer> mOtherSlots = new IdentityHashMap<>();
 
     private ShiftPersistenceManager mPersistence;
 
+    private final ShiftValueCache mCache = new ShiftValueCache();
+
+    private final ShiftValueIndex mIndex = new ShiftValueIndex();
+
+    private final ShiftValueSearchIndex mSearchIndex = new ShiftValueSearchIndex();
+
+    private boolean mInvalidationScheduled;
+
     public static final String PREFIX = "ShiftValue";
 
     public ShiftValueRegistrationManagerImpl(ShiftPersistenceManager persistenceManager) {
         mPersistence = persistenceManager;
     }
 
-    public void register(ShiftValue key, boolean defaultValue) {
-        if (mBooleanMap.containsKey(key)) {
-            throw new IllegalArgumentException("This key has already been registered before");
-        }
-        mBooleanMap.put(key, new BooleanPreference(mPersistence, key.toString(), defaultValue));
+    public synchronized void register(ShiftValue key, boolean defaultValue) {
+        checkNotRegistered(key);
+        add(key, new BooleanPreference(mPersistence, mCache, key.toString(), defaultValue));
+    }
+
+    public synchronized void register(ShiftValue key, int defaultValue) {
+        checkNotRegistered(key);
+        add(key, new IntPreference(mPersistence, mCache, key.toString(), defaultValue));
+    }
+
+    public synchronized void register(ShiftValue key, String defaultValue) {
+        checkNotRegistered(key);
+        add(key, new StringPreference(mPersistence, mCache, key.toString(), defaultValue));
+    }
+
+    public synchronized void register(ShiftValue key, float defaultValue) {
+        checkNotRegistered(key);
+        add(key, new FloatPreference(mPersistence, mCache, key.toString(), defaultValue));
     }
 
-    public void register(ShiftValue key, int defaultValue) {
-        if (mIntMap.containsKey(key)) {
+    @Override
+    public synchronized void register(ShiftValue key, StringListSelector defaultValue) {
+        checkNotRegistered(key);
+        add(key, new StringListSelectorPreference(mPersistence,
+                mCache,
+                key.toString(),
+                defaultValue));
+    }
+
+    private void checkNotRegistered(ShiftValue key) {
+        if (getSlot(key) != ShiftValueCache.NO_SLOT) {
             throw new IllegalArgumentException("This key has already been registered before");
         }
-        mIntMap.put(key,
-                new IntPreference(mPersistence, key.toString(), defaultValue));
     }
 
-    public void register(ShiftValue key, String defaultValue) {
-        if (mStringMap.containsKey(key)) {
-            throw new IllegalArgumentException("This key has already been registered before");
+    /**
+     * Returns the slot the given ShiftValue was registered at by this registration manager.
+     * This is an array load for ShiftValues this was the first to register, and a lookup
+     * under the lock for those registered with another registration manager first.
+     *
+     * @return {@link ShiftValueCache#NO_SLOT} if it is not registered here
+     */
+    int getSlot(ShiftValue key) {
+        int slot = key.mSlot;
+        ShiftValue[] shiftValues = mShiftValues;
+        if (slot >= 0 && slot < shiftValues.length && shiftValues[slot] == key) {
+            return slot;
         }
-        mStringMap.put(key,
-                new StringPreference(mPersistence, key.toString(), defaultValue));
+        return getOtherSlot(key);
     }
 
-    public void register(ShiftValue key, float defaultValue) {
-        if (mFloatMap.containsKey(key)) {
-            throw new IllegalArgumentException("This key has already been registered before");
+    private synchronized int getOtherSlot(ShiftValue key) {
+        Integer slot = mOtherSlots.get(key);
+        return slot != null ? slot : ShiftValueCache.NO_SLOT;
+    }
+
+    private void add(ShiftValue key, ShiftPref pref) {
+        int slot = pref.SLOT;
+        if (slot >= mPrefs.length) {
+            int capacity = Math.max(slot + 1, mPrefs.length * 2);
+            mShiftValues = Arrays.copyOf(mShiftValues, capacity);
+            mPrefs = Arrays.copyOf(mPrefs, capacity);
+        }
+        ShiftValue[] shiftValues = mShiftValues;
+        ShiftPref[] prefs = mPrefs;
+        shiftValues[slot] = key;
+        prefs[slot] = pref;
+        mCount = Math.max(mCount, slot + 1);
+        if (key.mSlot == ShiftValueCache.NO_SLOT) {
+            key.mSlot = slot;
+        } else {
+            mOtherSlots.put(key, slot);
         }
-        mFloatMap.put(key,
-                new FloatPreference(mPersistence, key.toString(), defaultValue));
+        // Re-publish so that lock-free readers see the new entries
+        mShiftValues = shiftValues;
+        mPrefs = prefs;
+        mIndex.add(key);
+        mSearchIndex.add(key, slot);
     }
 
-    @Override
-    public void register(ShiftValue key, StringListSelector defaultValue) {
-        if (mStringArraySelectorMap.containsKey(key)) {
-            throw new IllegalArgumentException("This key has already been registered before");
+    /**
+     * Returns the registered ShiftPref for the given ShiftValue if it is of the given type.
+     * See {@link #getSlot(ShiftValue)} for how it is found.
+     */
+    ShiftPref getPref(ShiftValue key, Class<? extends ShiftPref> type, String typeName) {
+        int slot = getSlot(key);
+        ShiftPref[] prefs = mPrefs;
+        if (slot < 0 || slot >= prefs.length || !type.isInstance(prefs[slot])) {
+            throw new IllegalArgumentException("There is no " + typeName + " value for this ShiftValue: "
+                    + key.toString());
         }
-        mStringArraySelectorMap.put(key, new StringListSelectorPreference(mPersistence,
-                key.toString(),
-                defaultValue));
+        return prefs[slot];
     }
 
     public boolean getBool(ShiftValue key) {
-        BooleanPreference pref = mBooleanMap.get(key);
-        if (pref == null) {
-            throw new IllegalArgumentException("There is no boolean value for this ShiftValue: " + key.toString());
-        }
-        return mBooleanMap.get(key).getValue();
+        return mCache.getBoolean(getPref(key, BooleanPreference.class, "boolean").SLOT);
     }
 
     public int getInt(ShiftValue key) {
-        IntPreference pref = mIntMap.get(key);
-        if (pref == null) {
-            throw new IllegalArgumentException("There is no int value for this ShiftValue: " + key.toString());
-        }
-        return mIntMap.get(key).getValue();
+        return mCache.getInt(getPref(key, IntPreference.class, "int").SLOT);
     }
 
     public String getString(ShiftValue key) {
-        StringPreference pref = mStringMap.get(key);
-        if (pref == null) {
-            throw new IllegalArgumentException("There is no String value for this ShiftValue: " + key.toString());
-        }
-        return mStringMap.get(key).getValue();
+        return (String) mCache.getObject(getPref(key, StringPreference.class, "String").SLOT);
     }
 
     public float getFloat(ShiftValue key) {
-        FloatPreference pref = mFloatMap.get(key);
-        if (pref == null) {
-            throw new IllegalArgumentException("There is no float value for this ShiftValue: " + key.toString());
-        }
-        return mFloatMap.get(key).getValue();
+        return mCache.getFloat(getPref(key, FloatPreference.class, "float").SLOT);
     }
 
     public StringListSelectorPreference getStringArraySelectorPreference(ShiftValue key) {
-        StringListSelectorPreference pref = mStringArraySelectorMap.get(key);
-        if (pref == null) {
-            throw new IllegalArgumentException("There is no StringListSelector value " +
-                    "for this ShiftValue: " + key.toString());
-        }
-        return pref;
+        return (StringListSelectorPreference) getPref(key, StringListSelectorPreference.class,
+                "StringListSelector");
     }
 
     public String getStringArraySelectorSelectedValue(ShiftValue key) {
-        StringListSelectorPreference pref = mStringArraySelectorMap.get(key);
-        if (pref == null) {
-            throw new IllegalArgumentException("There is no StringListSelector value " +
-                    "for this ShiftValue: " + key.toString());
-        }
-        return mStringArraySelectorMap.get(key).getValue().getSelectedValue();
+        return getStringArraySelectorPreference(key).getValue().getSelectedValue();
     }
 
     public List<String> getStringArraySelectorValues(ShiftValue key) {
-        StringListSelectorPreference pref = mStringArraySelectorMap.get(key);
-        if (pref == null) {
-            throw new IllegalArgumentException("There is no StringListSelector value " +
-                    "for this ShiftValue: " + key.toString());
-        }
-        return mStringArraySelectorMap.get(key).getValue().getList();
+        return getStringArraySelectorPreference(key).getValue().getList();
     }
 
-    Map<ShiftValue, ShiftPref> getShiftValueToPref() {
+    /**
+     * Returns every registered ShiftValue in menu order, split into categories.
+     * The snapshot is read-only and is only rebuilt after new ShiftValues are registered.
+     */
+    ShiftValueIndex.Snapshot getSnapshot() {
         /*
             Invalidate Database at this point. This point in execution guarantees all ShiftValues
             will be registered in ShiftValueRegistrationManagerImpl. This will only be called
             once per application launch.
           */
         invalidatePersistedStorageWithCache();
-        Map<ShiftValue, ShiftPref> map = new HashMap<ShiftValue, ShiftPref>();
-        map.putAll(mBooleanMap);
-        map.putAll(mIntMap);
-        map.putAll(mStringMap);
-        map.putAll(mFloatMap);
-        map.putAll(mStringArraySelectorMap);
-        return map;
+        return mIndex.snapshot();
+    }
+
+    /**
+     * Returns the registered ShiftValues with a word in their category, feature or author
+     * starting with each word of the query, in menu order. Safe to call off the main thread.
+     */
+    ShiftValueIndex.Snapshot search(String query) {
+        BitSet matches = mSearchIndex.search(query);
+        ShiftValueIndex.Snapshot snapshot = mIndex.snapshot();
+        return matches == null ? snapshot : snapshot.filter(matches, this);
+    }
+
+    /**
+     * @return The ShiftPref of a registered ShiftValue, whatever its type
+     */
+    ShiftPref getPref(ShiftValue key) {
+        return getPref(key, ShiftPref.class, "");
     }
 
     List<ShiftValue> getShiftValues() {
-        List<ShiftValue> features = new LinkedList<ShiftValue>();
-        features.addAll(mBooleanMap.keySet());
-        features.addAll(mIntMap.keySet());
-        features.addAll(mStringMap.keySet());
-        features.addAll(mFloatMap.keySet());
-        features.addAll(mStringArraySelectorMap.keySet());
-        return features;
+        return mIndex.snapshot().VALUES;
     }
 
     List<Pair<String, Integer>> getCategories() {
-        List<Pair<String, Integer>> categories = new ArrayList<>();
-        Map<ShiftValue, ShiftPref> shiftValueToPref = getShiftValueToPref();
-        List<ShiftValue> keys = new ArrayList<ShiftValue>(shiftValueToPref.keySet());
-        Collections.sort(keys);
-        String prevCategory = null;
-        int prevIndex = 0;
-        for (int i = 0; i < keys.size(); i++) {
-            ShiftValue value = keys.get(i);
-            if (prevCategory == null) {
-                prevCategory = value.CATEGORY;
-                prevIndex = i;
-            } else {
-                if (!prevCategory.equals(value.CATEGORY)) {
-                    categories.add(new Pair<String, Integer>(prevCategory, prevIndex));
-                    prevCategory = value.CATEGORY;
-                    prevIndex = i;
-                }
-            }
-        }
-        // Add last category
-        categories.add(new Pair<String, Integer>(prevCategory, prevIndex));
-        return categories;
+        return mIndex.snapshot().CATEGORIES;
     }
 
-    Set<String> getAllShiftValuesAsStrings() {
+    synchronized Set<String> getAllShiftValuesAsStrings() {
         Set<String> keys = new HashSet<>();
-        Set<ShiftValue> shiftValues = new HashSet<>();
-        shiftValues.addAll(mBooleanMap.keySet());
-        shiftValues.addAll(mIntMap.keySet());
-        shiftValues.addAll(mStringMap.keySet());
-        shiftValues.addAll(mFloatMap.keySet());
-        shiftValues.addAll(mStringArraySelectorMap.keySet());
-        for (ShiftValue value : shiftValues) {
-            keys.add(value.toString());
+        for (int i = 0; i < mCount; i++) {
+            keys.add(mPrefs[i].KEY);
         }
         return keys;
     }
@@ -215,12 +235,41 @@ class ShiftValueRegistrationManagerImpl implements ShiftValueRegistrationManager
      * Handles the case where client removes some ShiftValues from their code and are no longer
      * using them but they are still stored in database. If this happens we should remove
      * all ShiftValues that are no longer needed.
+     * The removal runs in the background once the store has loaded. Removed values are not
+     * registered, so nothing in the {@link ShiftValueCache} needs to be reloaded.
      */
     void invalidatePersistedStorageWithCache() {
-        ShiftPersistenceManager persistenceManager =
-                ShiftManager.getInstance().getPersistenceManager();
-        if (persistenceManager.shouldInvalidate()) {
-            persistenceManager.invalidateDatabase(getAllShiftValuesAsStrings());
+        final ShiftManager manager = ShiftManager.getInstance();
+        synchronized (this) {
+            if (mInvalidationScheduled || !mPersistence.shouldInvalidate()) {
+                return;
+            }
+            mInvalidationScheduled = true;
+        }
+        manager.runWhenReady(new Runnable() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run() {
+                new InvalidateDatabaseAsyncTask(mPersistence).execute(getAllShiftValuesAsStrings());
+            }
+        });
+    }
+
+    /**
+     * Re-reads every registered value from persistence into the {@link ShiftValueCache}
+     *
+     * @return The ShiftValues whose value is different after reloading
+     */
+    synchronized List<ShiftValue> reloadValues() {
+        List<ShiftValue> changed = new ArrayList<>();
+        for (int i = 0; i < mCount; i++) {
+            Object previous = mPrefs[i].getValue();
+            mPrefs[i].load();
+            Object current = mPrefs[i].getValue();
+            if (previous == null ? current != null : !previous.equals(current)) {
+                changed.add(mShiftValues[i]);
+            }
         }
+        return changed;
     }
 }
@@ -0,0 +1,93 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * Prefix index over the words of each registered ShiftValue's category, feature and author.
+ *
+ * Words are kept sorted, so all the words starting with a query word are one range of the map.
+ * Each word maps to the slots (see {@link ShiftValueRegistrationManagerImpl#getSlot(ShiftValue)})
+ * of the ShiftValues containing it.
+ */
+class ShiftValueSearchIndex {
+
+    private final TreeMap<String, BitSet> mSlotsByWord = new TreeMap<>();
+
+    synchronized void add(ShiftValue value, int slot) {
+        addWords(value.CATEGORY, slot);
+        addWords(value.FEATURE, slot);
+        addWords(value.AUTHOR, slot);
+    }
+
+    private void addWords(String text, int slot) {
+        for (String word : split(text)) {
+            BitSet slots = mSlotsByWord.get(word);
+            if (slots == null) {
+                slots = new BitSet();
+                mSlotsByWord.put(word, slots);
+            }
+            slots.set(slot);
+        }
+    }
+
+    /**
+     * Returns the slots of the ShiftValues that have, for every word of the query, a word
+     * starting with it. Case is ignored.
+     *
+     * @return null if the query has no words, i.e. everything matches
+     */
+    synchronized BitSet search(String query) {
+        BitSet matches = null;
+        for (String prefix : split(query)) {
+            BitSet prefixMatches = new BitSet();
+            // Every word starting with the prefix sorts between the prefix and prefix + U+FFFF
+            for (BitSet slots : mSlotsByWord.subMap(prefix, true, prefix + '\uffff', true).values()) {
+                prefixMatches.or(slots);
+            }
+            if (matches == null) {
+                matches = prefixMatches;
+            } else {
+                matches.and(prefixMatches);
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Splits text into lower case words of letters and digits
+     */
+    static List<String> split(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.US));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -14,7 +14,6 @@
 package org.coursera.android.shift;
 
 import android.content.Context;
-import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -22,8 +21,10 @@ import android.widget.TextView;
 
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 // Followed example from https://gist.github.com/gabrielemariotti/4c189fb1124df4556058
 class ShiftValueSectionedRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
@@ -31,10 +32,12 @@ class ShiftValueSectionedRecyclerViewAdapter extends RecyclerView.Adapter<Recycl
     private final Context mContext;
     private static final int SECTION_TYPE = 0;
 
-    private boolean mValid = true;
     private LayoutInflater mLayoutInflater;
     private RecyclerView.Adapter mBaseAdapter;
-    private SparseArray<Section> mSections = new SparseArray<Section>();
+    private Section[] mSections = new Section[0];
+    // Both sorted, indexed like mSections, so positions can be mapped with a binary search
+    private int[] mFirstPositions = new int[0];
+    private int[] mSectionedPositions = new int[0];
 
 
     public ShiftValueSectionedRecyclerViewAdapter(Context context,
@@ -43,34 +46,110 @@ class ShiftValueSectionedRecyclerViewAdapter extends RecyclerView.Adapter<Recycl
         mLayoutInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         mBaseAdapter = baseAdapter;
         mContext = context;
+        setHasStableIds(mBaseAdapter.hasStableIds());
 
         mBaseAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
             @Override
             public void onChanged() {
-                mValid = mBaseAdapter.getItemCount()>0;
                 notifyDataSetChanged();
             }
 
             @Override
             public void onItemRangeChanged(int positionStart, int itemCount) {
-                mValid = mBaseAdapter.getItemCount()>0;
-                notifyItemRangeChanged(positionStart, itemCount);
+                onItemRangeChanged(positionStart, itemCount, null);
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                // Rows of a range can be split by section headers, so map them one by one
+                for (int i = positionStart; i < positionStart + itemCount; i++) {
+                    notifyItemChanged(positionToSectionedPosition(i), payload);
+                }
             }
 
             @Override
             public void onItemRangeInserted(int positionStart, int itemCount) {
-                mValid = mBaseAdapter.getItemCount()>0;
-                notifyItemRangeInserted(positionStart, itemCount);
+                onRowsInserted(positionStart, itemCount);
             }
 
             @Override
             public void onItemRangeRemoved(int positionStart, int itemCount) {
-                mValid = mBaseAdapter.getItemCount()>0;
-                notifyItemRangeRemoved(positionStart, itemCount);
+                onRowsRemoved(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                // RecyclerView only ever moves one row at a time
+                onRowsRemoved(fromPosition, 1);
+                onRowsInserted(toPosition, 1);
             }
         });
     }
 
+    /*
+        Sections are given as base adapter positions, so rows inserted or removed by the base
+        adapter shift the sections after them. The sections stay as they are otherwise, until
+        setSections() brings in the new ones and adds or removes only the headers that changed.
+     */
+
+    /**
+     * Inserts the rows before the header of any section starting at positionStart, so that
+     * they are in one range
+     */
+    private void onRowsInserted(int positionStart, int itemCount) {
+        int sectionedStart = positionStart + countBefore(mFirstPositions, positionStart);
+        for (Section section : mSections) {
+            if (section.firstPosition >= positionStart) {
+                section.firstPosition += itemCount;
+            }
+        }
+        updatePositions();
+        notifyItemRangeInserted(sectionedStart, itemCount);
+    }
+
+    /**
+     * The removed rows can be split by headers, which are kept until setSections() is called
+     */
+    private void onRowsRemoved(int positionStart, int itemCount) {
+        // From the end, so that the positions of the runs still to be removed don't change
+        int runEnd = -1;
+        int runStart = -1;
+        for (int position = positionStart + itemCount - 1; position >= positionStart; position--) {
+            int sectionedPosition = positionToSectionedPosition(position);
+            if (sectionedPosition != runStart - 1) {
+                if (runEnd >= 0) {
+                    notifyItemRangeRemoved(runStart, runEnd - runStart + 1);
+                }
+                runEnd = sectionedPosition;
+            }
+            runStart = sectionedPosition;
+        }
+        if (runEnd >= 0) {
+            notifyItemRangeRemoved(runStart, runEnd - runStart + 1);
+        }
+        int removedEnd = positionStart + itemCount;
+        for (Section section : mSections) {
+            if (section.firstPosition >= removedEnd) {
+                section.firstPosition -= itemCount;
+            } else if (section.firstPosition > positionStart) {
+                section.firstPosition = positionStart;
+            }
+        }
+        updatePositions();
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        mBaseAdapter.onAttachedToRecyclerView(recyclerView);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        mBaseAdapter.onDetachedFromRecyclerView(recyclerView);
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
 
     public static class SectionViewHolder extends RecyclerView.ViewHolder {
 
@@ -92,16 +171,44 @@ class ShiftValueSectionedRecyclerViewAdapter extends RecyclerView.Adapter<Recycl
         }
     }
 
+    /*
+        Rows are bound through bindViewHolder so that they know the base adapter is the one
+        binding them, see findRelativeAdapterPositionIn
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public void onBindViewHolder(RecyclerView.ViewHolder sectionViewHolder, int position) {
-        if (isSectionHeaderPosition(position)) {
-            ((SectionViewHolder)sectionViewHolder).title.setText(mSections.get(position).title);
+        int section = sectionIndex(position);
+        if (section >= 0) {
+            ((SectionViewHolder)sectionViewHolder).title.setText(mSections[section].title);
         }else{
-            mBaseAdapter.onBindViewHolder(sectionViewHolder,sectionedPositionToPosition(position));
+            mBaseAdapter.bindViewHolder(sectionViewHolder,sectionedPositionToPosition(position));
         }
 
     }
 
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder sectionViewHolder, int position, List<Object> payloads) {
+        // The base adapter gets the payloads from the ViewHolder in bindViewHolder
+        onBindViewHolder(sectionViewHolder, position);
+    }
+
+    /**
+     * Lets rows of the base adapter find their position in it with
+     * {@link RecyclerView.ViewHolder#getBindingAdapterPosition()}
+     */
+    @Override
+    public int findRelativeAdapterPositionIn(RecyclerView.Adapter<? extends RecyclerView.ViewHolder> adapter,
+                                             RecyclerView.ViewHolder viewHolder, int localPosition) {
+        if (adapter == this) {
+            return localPosition;
+        }
+        if (adapter == mBaseAdapter && !isSectionHeaderPosition(localPosition)) {
+            return sectionedPositionToPosition(localPosition);
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
     @Override
     public int getItemViewType(int position) {
         return isSectionHeaderPosition(position)
@@ -126,9 +233,11 @@ class ShiftValueSectionedRecyclerViewAdapter extends RecyclerView.Adapter<Recycl
     }
 
 
+    /**
+     * Shows the given sections instead. Headers that are in both, with the same title at the
+     * same position, are kept and the others are removed or inserted.
+     */
     public void setSections(Section[] sections) {
-        mSections.clear();
-
         Arrays.sort(sections, new Comparator<Section>() {
             @Override
             public int compare(Section o, Section o1) {
@@ -138,56 +247,120 @@ class ShiftValueSectionedRecyclerViewAdapter extends RecyclerView.Adapter<Recycl
             }
         });
 
-        int offset = 0; // offset positions for the headers we're adding
-        for (Section section : sections) {
-            section.sectionedPosition = section.firstPosition + offset;
-            mSections.append(section.sectionedPosition, section);
-            ++offset;
+        // Removed from the end, so that the headers before keep their positions
+        List<Section> current = new ArrayList<>(Arrays.asList(mSections));
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if (indexOf(sections, current.get(i)) < 0) {
+                int sectionedPosition = mSectionedPositions[i];
+                current.remove(i);
+                setCurrentSections(current);
+                notifyItemRemoved(sectionedPosition);
+            }
+        }
+        // The kept headers are in the same order in both, so each new one goes in at its index
+        for (int i = 0; i < sections.length; i++) {
+            if (i < current.size() && sameSection(current.get(i), sections[i])) {
+                current.set(i, sections[i]);
+            } else {
+                current.add(i, sections[i]);
+                setCurrentSections(current);
+                notifyItemInserted(sections[i].firstPosition + i);
+            }
+        }
+        setCurrentSections(current);
+    }
+
+    private void setCurrentSections(List<Section> sections) {
+        mSections = sections.toArray(new Section[sections.size()]);
+        updatePositions();
+    }
+
+    private void updatePositions() {
+        int[] firstPositions = new int[mSections.length];
+        int[] sectionedPositions = new int[mSections.length];
+        for (int i = 0; i < mSections.length; i++) {
+            // offset positions for the headers before this one
+            mSections[i].sectionedPosition = mSections[i].firstPosition + i;
+            firstPositions[i] = mSections[i].firstPosition;
+            sectionedPositions[i] = mSections[i].sectionedPosition;
         }
+        mFirstPositions = firstPositions;
+        mSectionedPositions = sectionedPositions;
+    }
 
-        notifyDataSetChanged();
+    private static boolean sameSection(Section section, Section other) {
+        return section.firstPosition == other.firstPosition
+                && section.title.toString().equals(other.title.toString());
     }
 
-    public int positionToSectionedPosition(int position) {
-        int offset = 0;
-        for (int i = 0; i < mSections.size(); i++) {
-            if (mSections.valueAt(i).firstPosition > position) {
-                break;
+    private static int indexOf(Section[] sections, Section section) {
+        for (int i = 0; i < sections.length; i++) {
+            if (sameSection(sections[i], section)) {
+                return i;
             }
-            ++offset;
         }
-        return position + offset;
+        return -1;
+    }
+
+    public int positionToSectionedPosition(int position) {
+        // One header for every section that starts at or before this position
+        return position + countAtOrBefore(mFirstPositions, position);
     }
 
     public int sectionedPositionToPosition(int sectionedPosition) {
         if (isSectionHeaderPosition(sectionedPosition)) {
             return RecyclerView.NO_POSITION;
         }
-
-        int offset = 0;
-        for (int i = 0; i < mSections.size(); i++) {
-            if (mSections.valueAt(i).sectionedPosition > sectionedPosition) {
-                break;
-            }
-            --offset;
-        }
-        return sectionedPosition + offset;
+        return sectionedPosition - countAtOrBefore(mSectionedPositions, sectionedPosition);
     }
 
     public boolean isSectionHeaderPosition(int position) {
-        return mSections.get(position) != null;
+        return sectionIndex(position) >= 0;
+    }
+
+    /**
+     * @return The index of the section whose header is at this position, or a negative number
+     * if the position is not a header
+     */
+    private int sectionIndex(int sectionedPosition) {
+        return Arrays.binarySearch(mSectionedPositions, sectionedPosition);
+    }
+
+    /**
+     * @return How many of the sorted positions are less than the given position
+     */
+    private static int countBefore(int[] sortedPositions, int position) {
+        return position == 0 ? 0 : countAtOrBefore(sortedPositions, position - 1);
+    }
+
+    /**
+     * @return How many of the sorted positions are less than or equal to the given position
+     */
+    private static int countAtOrBefore(int[] sortedPositions, int position) {
+        int low = 0;
+        int high = sortedPositions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPositions[mid] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
 
     @Override
     public long getItemId(int position) {
-        return isSectionHeaderPosition(position)
-                ? Integer.MAX_VALUE - mSections.indexOfKey(position)
+        int section = sectionIndex(position);
+        return section >= 0
+                ? Integer.MAX_VALUE - section
                 : mBaseAdapter.getItemId(sectionedPositionToPosition(position));
     }
 
     @Override
     public int getItemCount() {
-        return (mValid ? mBaseAdapter.getItemCount() + mSections.size() : 0);
+        return mBaseAdapter.getItemCount() + mSections.length;
     }
 }
@@ -13,6 +13,8 @@
 
 package org.coursera.android.shift;
 
+import androidx.lifecycle.LifecycleOwner;
+
 interface ShiftValueSubscriptionManager {
     /**
      * Provides the client applications Launcher class to Shift so that {@link ShiftValue}
@@ -39,6 +41,15 @@ interface ShiftValueSubscriptionManager {
      */
     void subscribeToUpdatesForAllShiftValues(ShiftValueListener listener);
 
+    /**
+     * Like {@link #subscribeToUpdatesForAllShiftValues(ShiftValueListener)} but calls the
+     * listener as the given mode says. Subscribing again changes the mode.
+     *
+     * @param listener
+     * @param mode
+     */
+    void subscribeToUpdatesForAllShiftValues(ShiftValueListener listener, ShiftDispatchMode mode);
+
     /**
      * Registers your ShiftValueListener to call shiftValuesUpdated
      * when the given {@link ShiftValue}  has been modified
@@ -48,6 +59,16 @@ interface ShiftValueSubscriptionManager {
     void subscribeToUpdatesForShiftValue(ShiftValueListener listener,
                                          ShiftValue value);
 
+    /**
+     * Like {@link #subscribeToUpdatesForShiftValue(ShiftValueListener, ShiftValue)} but calls
+     * the listener as the given mode says
+     *
+     * @param listener
+     * @param mode
+     */
+    void subscribeToUpdatesForShiftValue(ShiftValueListener listener, ShiftValue value,
+                                         ShiftDispatchMode mode);
+
     /**
      * Registers your Activity to call {@link ShiftValueListener#onShiftValuesUpdated(ShiftValue)}
      * when the given {@link ShiftValue} have been modified
@@ -56,6 +77,92 @@ interface ShiftValueSubscriptionManager {
      */
     void subscribeToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values);
 
+    /**
+     * Like {@link #subscribeToUpdatesForShiftValues(ShiftValueListener, ShiftValue[])} but calls
+     * the listener as the given mode says
+     *
+     * @param listener
+     * @param mode
+     */
+    void subscribeToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values,
+                                          ShiftDispatchMode mode);
+
+    /**
+     * Registers your ShiftValueListener to call shiftValuesUpdated when any {@link ShiftValue}
+     * of the given category has been modified
+     *
+     * @param listener
+     * @param category
+     */
+    void subscribeToUpdatesForCategory(ShiftValueListener listener, String category);
+
+    /**
+     * Like {@link #subscribeToUpdatesForCategory(ShiftValueListener, String)} but calls the
+     * listener as the given mode says
+     *
+     * @param listener
+     * @param category
+     * @param mode
+     */
+    void subscribeToUpdatesForCategory(ShiftValueListener listener, String category,
+                                       ShiftDispatchMode mode);
+
+    /**
+     * Registers your ShiftValueListener to call shiftValuesUpdated when any {@link ShiftValue}
+     * whose category starts with the given prefix has been modified
+     *
+     * @param listener
+     * @param prefix
+     */
+    void subscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix);
+
+    /**
+     * Like {@link #subscribeToUpdatesForCategoryPrefix(ShiftValueListener, String)} but calls the
+     * listener as the given mode says
+     *
+     * @param listener
+     * @param prefix
+     * @param mode
+     */
+    void subscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix,
+                                             ShiftDispatchMode mode);
+
+    /**
+     * Like {@link #subscribeToUpdatesForAllShiftValues(ShiftValueListener)} but does not keep
+     * the listener from being garbage collected. Keep a reference to the listener for as long
+     * as it should be called.
+     *
+     * @param listener
+     */
+    void subscribeWeaklyToUpdatesForAllShiftValues(ShiftValueListener listener);
+
+    /**
+     * Like {@link #subscribeToUpdatesForShiftValues(ShiftValueListener, ShiftValue[])} but does
+     * not keep the listener from being garbage collected
+     *
+     * @param listener
+     */
+    void subscribeWeaklyToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values);
+
+    /**
+     * Like {@link #subscribeToUpdatesForAllShiftValues(ShiftValueListener)} until the owner,
+     * e.g. your Activity, is destroyed. Must be called on the main thread.
+     *
+     * @param owner
+     * @param listener
+     */
+    void subscribeToUpdatesForAllShiftValues(LifecycleOwner owner, ShiftValueListener listener);
+
+    /**
+     * Like {@link #subscribeToUpdatesForShiftValues(ShiftValueListener, ShiftValue[])} until the
+     * owner, e.g. your Activity, is destroyed. Must be called on the main thread.
+     *
+     * @param owner
+     * @param listener
+     */
+    void subscribeToUpdatesForShiftValues(LifecycleOwner owner, ShiftValueListener listener,
+                                          ShiftValue[] values);
+
     /**
      * Must be called on your Activity's onDestroy if you previously called
      * {@link #subscribeToUpdatesForAllShiftValues(ShiftValueListener)} in your Activity's onCreate
@@ -85,4 +192,21 @@ interface ShiftValueSubscriptionManager {
      */
     void unsubscribeToUpdatesForShiftValues(ShiftValueListener listener,
                                             ShiftValue[] values);
+
+    /**
+     * Your ShiftValueListener will no longer receive updates for the given category
+     *
+     * @param listener
+     * @param category
+     */
+    void unsubscribeToUpdatesForCategory(ShiftValueListener listener, String category);
+
+    /**
+     * Your ShiftValueListener will no longer receive updates for categories starting with the
+     * given prefix
+     *
+     * @param listener
+     * @param prefix
+     */
+    void unsubscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix);
 }
@@ -15,33 +15,306 @@ package org.coursera.android.shift;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Listeners may subscribe and unsubscribe from any thread, including from within a notification.
+ * Notifying never locks: it iterates the subscription arrays as they were when it read them.
+ *
+ * Listeners that are not called {@link ShiftDispatchMode#IMMEDIATE}ly have their notifications
+ * conflated: values that change again before the listener is called are only reported once.
+ *
+ * Listeners subscribed to a category or category prefix are found through an index by category,
+ * so a change is only offered to the listeners that asked for its category.
+ *
+ * Weakly subscribed listeners are not kept from being garbage collected. Their subscriptions are
+ * removed the next time a notification finds them collected.
+ */
 class ShiftValueSubscriptionManagerImpl implements ShiftValueSubscriptionManager {
 
-    private Map<ShiftValue, List<ShiftValueListener>> mValuesToListeners = new HashMap<ShiftValue, List<ShiftValueListener>>();
+    private final ConcurrentMap<ShiftValue, ListenerList> mValuesToListeners =
+            new ConcurrentHashMap<ShiftValue, ListenerList>();
 
-    private Set<ShiftValue> mApplicationFeatures = new HashSet<ShiftValue>();
+    private final Set<ShiftValue> mApplicationFeatures =
+            Collections.newSetFromMap(new ConcurrentHashMap<ShiftValue, Boolean>());
 
     private final ShiftValue ALL_FEATURE = new ShiftValue();
 
+    private final ConcurrentMap<String, ListenerList> mCategoriesToListeners =
+            new ConcurrentHashMap<String, ListenerList>();
+
+    private final ConcurrentMap<String, ListenerList> mPrefixesToListeners =
+            new ConcurrentHashMap<String, ListenerList>();
+
+    // The lists of every prefix of each category notified so far. Replaced, never changed, and
+    // cleared whenever a new prefix is subscribed to
+    private volatile Map<String, ListenerList[]> mCategoriesToPrefixListeners =
+            Collections.emptyMap();
+
     private Class mLauncherClass;
 
     private Context mContext;
 
+    private final Executor mMainThreadExecutor = new Executor() {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    };
+
+    private ExecutorService mBackgroundExecutor;
+
     ShiftValueSubscriptionManagerImpl(Context context) {
         mContext = context;
-        for (ShiftValue entry : ShiftManager.getInstance().getValueRegistrationManager().getShiftValues()) {
-            mValuesToListeners.put(entry, new LinkedList<ShiftValueListener>());
+    }
+
+    /**
+     * @return Where listeners subscribed with the mode are called, or null if they are called
+     * immediately
+     */
+    synchronized Executor getExecutor(ShiftDispatchMode mode) {
+        switch (mode) {
+            case MAIN_THREAD:
+                return mMainThreadExecutor;
+            case BACKGROUND:
+                if (mBackgroundExecutor == null) {
+                    mBackgroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "ShiftListeners");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+                return mBackgroundExecutor;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * A listener subscribed to one ShiftValue, or to all of them, and where it is called
+     */
+    private static class Subscription implements Runnable {
+        // One of the two is null, depending on whether the subscription is weak
+        private final ShiftValueListener mListener;
+        private final WeakReference<ShiftValueListener> mWeakListener;
+        // Null if the listener is called immediately
+        final Executor EXECUTOR;
+        // Changed values the listener has not been called for yet
+        private final Set<ShiftValue> mPending = new LinkedHashSet<>();
+        private volatile boolean mCancelled;
+
+        Subscription(ShiftValueListener listener, boolean weak, Executor executor) {
+            mListener = weak ? null : listener;
+            mWeakListener = weak ? new WeakReference<>(listener) : null;
+            EXECUTOR = executor;
+        }
+
+        boolean isWeak() {
+            return mWeakListener != null;
+        }
+
+        /**
+         * @return The listener, or null if it was weakly subscribed and has been collected
+         */
+        ShiftValueListener getListener() {
+            return mListener != null ? mListener : mWeakListener.get();
+        }
+
+        /**
+         * Calls the listener for the given value on its executor, unless a call that will
+         * report the value is already pending
+         */
+        void post(ShiftValue value) {
+            boolean schedule;
+            synchronized (this) {
+                schedule = mPending.isEmpty();
+                mPending.add(value);
+            }
+            if (schedule) {
+                EXECUTOR.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<ShiftValue> values;
+            synchronized (this) {
+                values = new ArrayList<>(mPending);
+                mPending.clear();
+            }
+            ShiftValueListener listener = getListener();
+            if (mCancelled || listener == null) {
+                return;
+            }
+            if (values.size() == 1) {
+                listener.onShiftValuesUpdated(values.get(0));
+            } else {
+                deliver(listener, values);
+            }
+        }
+    }
+
+    /**
+     * The subscriptions to one ShiftValue. Every change replaces the array, so that an array
+     * once read never changes. The map makes finding a listener's subscription O(1), and only
+     * holds listeners weakly so that weak subscriptions stay weak.
+     */
+    private static class ListenerList {
+        private static final Subscription[] EMPTY = new Subscription[0];
+
+        private final Map<ShiftValueListener, Subscription> mMembers = new WeakHashMap<>();
+        private volatile Subscription[] mSubscriptions = EMPTY;
+
+        Subscription[] get() {
+            return mSubscriptions;
+        }
+
+        /**
+         * Subscribes the listener, or changes where it is called if it already is
+         */
+        synchronized void add(ShiftValueListener listener, boolean weak, Executor executor) {
+            Subscription previous = mMembers.get(listener);
+            if (previous != null && previous.EXECUTOR == executor && previous.isWeak() == weak) {
+                return;
+            }
+            Subscription subscription = new Subscription(listener, weak, executor);
+            mMembers.put(listener, subscription);
+            // The previous subscription may already have been purged from the array
+            int index = previous != null ? indexOf(mSubscriptions, previous) : -1;
+            if (index >= 0) {
+                // Still subscribed, so values already posted to the old executor are reported
+                Subscription[] subscriptions = mSubscriptions.clone();
+                subscriptions[index] = subscription;
+                mSubscriptions = subscriptions;
+            } else {
+                Subscription[] subscriptions = new Subscription[mSubscriptions.length + 1];
+                System.arraycopy(mSubscriptions, 0, subscriptions, 0, mSubscriptions.length);
+                subscriptions[mSubscriptions.length] = subscription;
+                mSubscriptions = subscriptions;
+            }
+        }
+
+        synchronized void remove(ShiftValueListener listener) {
+            Subscription removed = mMembers.remove(listener);
+            if (removed == null) {
+                return;
+            }
+            // Drop notifications that are still pending
+            removed.mCancelled = true;
+            int index = indexOf(mSubscriptions, removed);
+            if (index < 0) {
+                // Already purged from the array
+                return;
+            }
+            Subscription[] subscriptions = new Subscription[mSubscriptions.length - 1];
+            System.arraycopy(mSubscriptions, 0, subscriptions, 0, index);
+            System.arraycopy(mSubscriptions, index + 1, subscriptions, index,
+                    subscriptions.length - index);
+            mSubscriptions = subscriptions;
         }
-        mValuesToListeners.put(ALL_FEATURE, new LinkedList<ShiftValueListener>());
+
+        /**
+         * Removes the weak subscriptions whose listeners have been collected
+         */
+        synchronized void purge() {
+            List<Subscription> alive = new ArrayList<>(mSubscriptions.length);
+            for (Subscription subscription : mSubscriptions) {
+                if (subscription.getListener() != null) {
+                    alive.add(subscription);
+                }
+            }
+            if (alive.size() < mSubscriptions.length) {
+                mSubscriptions = alive.toArray(new Subscription[alive.size()]);
+            }
+        }
+
+        private static int indexOf(Subscription[] subscriptions, Subscription subscription) {
+            for (int i = 0; i < subscriptions.length; i++) {
+                if (subscriptions[i] == subscription) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private ListenerList getOrCreateListeners(ShiftValue value) {
+        return getOrCreateListeners(mValuesToListeners, value);
+    }
+
+    private static <K> ListenerList getOrCreateListeners(ConcurrentMap<K, ListenerList> map, K key) {
+        ListenerList listeners = map.get(key);
+        if (listeners == null) {
+            ListenerList created = new ListenerList();
+            listeners = map.putIfAbsent(key, created);
+            if (listeners == null) {
+                listeners = created;
+            }
+        }
+        return listeners;
+    }
+
+    private ListenerList getOrCreatePrefixListeners(String prefix) {
+        ListenerList listeners = mPrefixesToListeners.get(prefix);
+        if (listeners == null) {
+            synchronized (this) {
+                listeners = getOrCreateListeners(mPrefixesToListeners, prefix);
+                // Categories may now have one more matching prefix
+                mCategoriesToPrefixListeners = Collections.emptyMap();
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * @return The lists of the subscribed prefixes the given category starts with
+     */
+    private ListenerList[] getPrefixListeners(String category) {
+        ListenerList[] listeners = mCategoriesToPrefixListeners.get(category);
+        if (listeners != null) {
+            return listeners;
+        }
+        synchronized (this) {
+            List<ListenerList> matches = new ArrayList<>();
+            for (Map.Entry<String, ListenerList> entry : mPrefixesToListeners.entrySet()) {
+                if (category.startsWith(entry.getKey())) {
+                    matches.add(entry.getValue());
+                }
+            }
+            listeners = matches.toArray(new ListenerList[matches.size()]);
+            Map<String, ListenerList[]> categoriesToPrefixListeners =
+                    new HashMap<>(mCategoriesToPrefixListeners);
+            categoriesToPrefixListeners.put(category, listeners);
+            mCategoriesToPrefixListeners = categoriesToPrefixListeners;
+        }
+        return listeners;
     }
 
     public void restartApplication() {
@@ -60,21 +333,126 @@ class ShiftValueSubscriptionManagerImpl implements ShiftValueSubscriptionManager
         mLauncherClass = launcherClass;
     }
 
+    /**
+     * @return How many listeners are subscribed to the value, or to all values if it is null
+     */
+    int getSubscriptionCount(ShiftValue value) {
+        ListenerList listeners = mValuesToListeners.get(value == null ? ALL_FEATURE : value);
+        return listeners == null ? 0 : listeners.get().length;
+    }
+
     public void notifyShiftListeners(ShiftValue feature) {
 
-        List<ShiftValueListener> listeners = mValuesToListeners.get(feature);
-        if (listeners != null) {
-            for (ShiftValueListener listener : listeners) {
+        notify(mValuesToListeners.get(feature), feature);
+        notify(mValuesToListeners.get(ALL_FEATURE), feature);
+        notify(mCategoriesToListeners.get(feature.CATEGORY), feature);
+        for (ListenerList listeners : getPrefixListeners(feature.CATEGORY)) {
+            notify(listeners, feature);
+        }
+        restartApplicationForFeature(feature);
+    }
+
+    private static void notify(ListenerList listeners, ShiftValue feature) {
+        if (listeners == null) {
+            return;
+        }
+        boolean collected = false;
+        for (Subscription subscription : listeners.get()) {
+            ShiftValueListener listener = subscription.getListener();
+            if (listener == null) {
+                collected = true;
+            } else if (subscription.EXECUTOR == null) {
                 listener.onShiftValuesUpdated(feature);
+            } else {
+                subscription.post(feature);
             }
         }
-        List<ShiftValueListener> allListeners = mValuesToListeners.get(ALL_FEATURE);
-        if (allListeners != null) {
-            for (ShiftValueListener listener : allListeners) {
+        if (collected) {
+            listeners.purge();
+        }
+    }
+
+    /**
+     * Notifies listeners of ShiftValues that were updated together by a {@link ShiftEditor}.
+     * {@link ShiftValueBatchListener}s are called once with every value they are subscribed to,
+     * and the application is restarted at most once.
+     *
+     * @param features
+     */
+    public void notifyShiftListeners(List<ShiftValue> features) {
+        notifyListeners(features);
+        for (ShiftValue feature : features) {
+            if (mApplicationFeatures.contains(feature)) {
+                restartApplication();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Like {@link #notifyShiftListeners(List)} but never restarts the application. Used when
+     * values change because they were loaded, not because somebody changed them.
+     *
+     * @param features
+     */
+    void notifyListeners(List<ShiftValue> features) {
+        Map<ShiftValueListener, List<ShiftValue>> updates = new LinkedHashMap<>();
+        ListenerList allListeners = mValuesToListeners.get(ALL_FEATURE);
+        for (ShiftValue feature : features) {
+            addUpdate(updates, mValuesToListeners.get(feature), feature);
+            addUpdate(updates, allListeners, feature);
+            addUpdate(updates, mCategoriesToListeners.get(feature.CATEGORY), feature);
+            for (ListenerList listeners : getPrefixListeners(feature.CATEGORY)) {
+                addUpdate(updates, listeners, feature);
+            }
+        }
+        for (Map.Entry<ShiftValueListener, List<ShiftValue>> entry : updates.entrySet()) {
+            deliver(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void deliver(ShiftValueListener listener, List<ShiftValue> features) {
+        if (listener instanceof ShiftValueBatchListener) {
+            ((ShiftValueBatchListener) listener).onShiftValuesUpdated(features);
+        } else {
+            for (ShiftValue feature : features) {
                 listener.onShiftValuesUpdated(feature);
             }
         }
-        restartApplicationForFeature(feature);
+    }
+
+    /**
+     * Collects the values to call immediate listeners with, and posts the others' calls
+     */
+    private static void addUpdate(Map<ShiftValueListener, List<ShiftValue>> updates,
+                                  ListenerList listeners, ShiftValue feature) {
+        if (listeners == null) {
+            return;
+        }
+        boolean collected = false;
+        for (Subscription subscription : listeners.get()) {
+            ShiftValueListener listener = subscription.getListener();
+            if (listener == null) {
+                collected = true;
+                continue;
+            }
+            if (subscription.EXECUTOR != null) {
+                // Pending values are posted together, so the listener is still called once
+                subscription.post(feature);
+                continue;
+            }
+            List<ShiftValue> values = updates.get(listener);
+            if (values == null) {
+                values = new ArrayList<>();
+                updates.put(listener, values);
+            }
+            if (!values.contains(feature)) {
+                values.add(feature);
+            }
+        }
+        if (collected) {
+            listeners.purge();
+        }
     }
 
     /**
@@ -97,47 +475,120 @@ class ShiftValueSubscriptionManagerImpl implements ShiftValueSubscriptionManager
     }
 
     public void subscribeToUpdatesForAllShiftValues(ShiftValueListener listener) {
+        subscribeToUpdatesForAllShiftValues(listener, ShiftDispatchMode.IMMEDIATE);
+    }
 
-        List<ShiftValueListener> listeners = mValuesToListeners.get(ALL_FEATURE);
-        if (!listeners.contains(listener)) {
-            listeners.add(listener);
-        }
+    public void subscribeToUpdatesForAllShiftValues(ShiftValueListener listener,
+                                                    ShiftDispatchMode mode) {
+        getOrCreateListeners(ALL_FEATURE).add(listener, false, getExecutor(mode));
     }
 
 
     public void subscribeToUpdatesForShiftValue(ShiftValueListener listener,
                                                 ShiftValue value) {
+        subscribeToUpdatesForShiftValue(listener, value, ShiftDispatchMode.IMMEDIATE);
+    }
 
-        List<ShiftValueListener> listeners = mValuesToListeners.get(value);
-        if (listeners != null) {
-            if (!listeners.contains(listener)) {
-                listeners.add(listener);
-            }
-        } else {
-            listeners = new ArrayList<ShiftValueListener>();
-            listeners.add(listener);
-            mValuesToListeners.put(value, listeners);
-        }
-        mValuesToListeners.get(value).add(listener);
+    public void subscribeToUpdatesForShiftValue(ShiftValueListener listener, ShiftValue value,
+                                                ShiftDispatchMode mode) {
+        getOrCreateListeners(value).add(listener, false, getExecutor(mode));
     }
 
     public void subscribeToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values) {
+        subscribeToUpdatesForShiftValues(listener, values, ShiftDispatchMode.IMMEDIATE);
+    }
+
+    public void subscribeToUpdatesForShiftValues(ShiftValueListener listener, ShiftValue[] values,
+                                                 ShiftDispatchMode mode) {
         for (ShiftValue value : values) {
-            subscribeToUpdatesForShiftValue(listener, value);
+            subscribeToUpdatesForShiftValue(listener, value, mode);
         }
     }
 
 
-    public void unsubscribeToUpdatesForAllShiftValues(ShiftValueListener listener) {
-        List<ShiftValueListener> listeners = mValuesToListeners.get(ALL_FEATURE);
-        if (listeners != null) {
-            listeners.remove(listener);
+    public void subscribeToUpdatesForCategory(ShiftValueListener listener, String category) {
+        subscribeToUpdatesForCategory(listener, category, ShiftDispatchMode.IMMEDIATE);
+    }
+
+    public void subscribeToUpdatesForCategory(ShiftValueListener listener, String category,
+                                              ShiftDispatchMode mode) {
+        getOrCreateListeners(mCategoriesToListeners, category).add(listener, false, getExecutor(mode));
+    }
+
+    public void subscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix) {
+        subscribeToUpdatesForCategoryPrefix(listener, prefix, ShiftDispatchMode.IMMEDIATE);
+    }
+
+    public void subscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix,
+                                                    ShiftDispatchMode mode) {
+        getOrCreatePrefixListeners(prefix).add(listener, false, getExecutor(mode));
+    }
+
+    public void subscribeWeaklyToUpdatesForAllShiftValues(ShiftValueListener listener) {
+        getOrCreateListeners(ALL_FEATURE).add(listener, true, null);
+    }
+
+    public void subscribeWeaklyToUpdatesForShiftValues(ShiftValueListener listener,
+                                                       ShiftValue[] values) {
+        for (ShiftValue value : values) {
+            getOrCreateListeners(value).add(listener, true, null);
+        }
+    }
+
+    public void subscribeToUpdatesForAllShiftValues(LifecycleOwner owner,
+                                                    final ShiftValueListener listener) {
+        if (observeUntilDestroyed(owner, new Runnable() {
+            @Override
+            public void run() {
+                unsubscribeToUpdatesForAllShiftValues(listener);
+            }
+        })) {
+            subscribeToUpdatesForAllShiftValues(listener);
         }
     }
 
+    public void subscribeToUpdatesForShiftValues(LifecycleOwner owner,
+                                                 final ShiftValueListener listener,
+                                                 final ShiftValue[] values) {
+        if (observeUntilDestroyed(owner, new Runnable() {
+            @Override
+            public void run() {
+                unsubscribeToUpdatesForShiftValues(listener, values);
+            }
+        })) {
+            subscribeToUpdatesForShiftValues(listener, values);
+        }
+    }
+
+    /**
+     * Runs the given unsubscription when the owner is destroyed
+     *
+     * @return False if the owner is already destroyed, and nothing should be subscribed
+     */
+    private static boolean observeUntilDestroyed(LifecycleOwner owner, final Runnable unsubscribe) {
+        final Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            return false;
+        }
+        lifecycle.addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    lifecycle.removeObserver(this);
+                    unsubscribe.run();
+                }
+            }
+        });
+        return true;
+    }
+
+    public void unsubscribeToUpdatesForAllShiftValues(ShiftValueListener listener) {
+        unsubscribeToUpdatesForShiftValue(listener, ALL_FEATURE);
+    }
+
 
     public void unsubscribeToUpdatesForShiftValue(ShiftValueListener listener, ShiftValue value) {
-        List<ShiftValueListener> listeners = mValuesToListeners.get(value);
+        ListenerList listeners = mValuesToListeners.get(value);
         if (listeners != null) {
             listeners.remove(listener);
         }
@@ -149,4 +600,18 @@ class ShiftValueSubscriptionManagerImpl implements ShiftValueSubscriptionManager
             unsubscribeToUpdatesForShiftValue(listener, value);
         }
     }
+
+    public void unsubscribeToUpdatesForCategory(ShiftValueListener listener, String category) {
+        ListenerList listeners = mCategoriesToListeners.get(category);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    public void unsubscribeToUpdatesForCategoryPrefix(ShiftValueListener listener, String prefix) {
+        ListenerList listeners = mPrefixesToListeners.get(prefix);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
 }
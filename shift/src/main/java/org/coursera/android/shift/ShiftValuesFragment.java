@@ -13,22 +13,33 @@
 
 package org.coursera.android.shift;
 
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 
 import androidx.core.util.Pair;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class ShiftValuesFragment extends ViewPagerFragment {
 
     private static final String TAB_TITLE_FEATURE = "Values";
 
+    private ShiftValueRegistrationManagerImpl mRegistrationManager;
+    private ShiftValueRecyclerViewAdapter mAdapter;
+    // Only one of these is used, see ShiftManager#setStickyCategoryHeaders(boolean)
+    private ShiftValueSectionedRecyclerViewAdapter mSectionedAdapter;
+    private ShiftValueCategoryHeaderDecoration mHeaderDecoration;
+    private RecyclerView mRecyclerView;
+    private SearchTask mSearchTask;
+
     public ShiftValuesFragment() {
         super(TAB_TITLE_FEATURE);
     }
@@ -42,35 +53,122 @@ public class ShiftValuesFragment extends ViewPagerFragment {
                              Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.shift_values_fragment, container, false);
         RecyclerView recyclerView = (RecyclerView) view.findViewById(R.id.recycler_view);
+        mRecyclerView = recyclerView;
         recyclerView.setHasFixedSize(true);
         recyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
 
         int bottomMargin = (int) getResources().getDimension(R.dimen.card_margin);
         recyclerView.addItemDecoration(new VerticalMarginItemDecoration(bottomMargin));
 
-        ShiftValueRecyclerViewAdapter adapter = new ShiftValueRecyclerViewAdapter(getActivity(),
-                ShiftManager.getInstance().getValueRegistrationManager().getShiftValueToPref());
+        mRegistrationManager = ShiftManager.getInstance().getValueRegistrationManager();
+        ShiftValueIndex.Snapshot snapshot = mRegistrationManager.getSnapshot();
+        mAdapter = new ShiftValueRecyclerViewAdapter(getActivity(),
+                snapshot.VALUES, mRegistrationManager, ShiftManager.getInstance().getEditCommitDelay());
+
+        // Rows outlive this fragment, so the next time the menu opens it doesn't inflate them
+        boolean stickyHeaders = ShiftManager.getInstance().hasStickyCategoryHeaders();
+        ShiftViewPoolFragment viewPool = ShiftViewPoolFragment.get(getActivity());
+        recyclerView.setRecycledViewPool(viewPool.getRecycledViewPool(stickyHeaders));
+        mAdapter.setViewPool(viewPool);
+
+        if (stickyHeaders) {
+            mHeaderDecoration = new ShiftValueCategoryHeaderDecoration(getActivity());
+            mHeaderDecoration.setCategories(snapshot.CATEGORIES);
+            recyclerView.addItemDecoration(mHeaderDecoration);
+            recyclerView.setAdapter(mAdapter);
+        } else {
+            //Add your adapter to the sectionAdapter
+            mSectionedAdapter = new ShiftValueSectionedRecyclerViewAdapter(getActivity(), mAdapter);
+            mSectionedAdapter.setSections(toSections(snapshot.CATEGORIES));
+
+            //Apply this adapter to the RecyclerView
+            recyclerView.setAdapter(mSectionedAdapter);
+        }
 
-        List<ShiftValueSectionedRecyclerViewAdapter.Section> sections =
-                new ArrayList<>();
+        EditText search = (EditText) view.findViewById(R.id.search_values);
+        search.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
 
-        //Sections
-        List<Pair<String,Integer>> categories =
-                ShiftManager.getInstance().getValueRegistrationManager().getCategories();
+            }
 
-        for (Pair<String,Integer> category : categories) {
-            sections.add(new ShiftValueSectionedRecyclerViewAdapter.Section(category.first,
-                    category.second));
-        }
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
 
-        //Add your adapter to the sectionAdapter
-        ShiftValueSectionedRecyclerViewAdapter.Section[] dummy = new ShiftValueSectionedRecyclerViewAdapter.Section[sections.size()];
-        ShiftValueSectionedRecyclerViewAdapter mSectionedAdapter = new
-                ShiftValueSectionedRecyclerViewAdapter(getActivity(), adapter);
-        mSectionedAdapter.setSections(sections.toArray(dummy));
+            }
 
-        //Apply this adapter to the RecyclerView
-        recyclerView.setAdapter(mSectionedAdapter);
+            @Override
+            public void afterTextChanged(Editable s) {
+                search(s.toString());
+            }
+        });
         return view;
     }
+
+    @Override
+    public void onDestroyView() {
+        if (mSearchTask != null) {
+            mSearchTask.cancel(false);
+            mSearchTask = null;
+        }
+        // Hand the rows back to the shared pool. This also lets the adapter unsubscribe.
+        mRecyclerView.swapAdapter(null, true);
+        mRecyclerView = null;
+        super.onDestroyView();
+    }
+
+    private void setCategories(List<Pair<String, Integer>> categories) {
+        if (mHeaderDecoration != null) {
+            mHeaderDecoration.setCategories(categories);
+            mRecyclerView.invalidateItemDecorations();
+        } else {
+            mSectionedAdapter.setSections(toSections(categories));
+        }
+    }
+
+    private static ShiftValueSectionedRecyclerViewAdapter.Section[] toSections(
+            List<Pair<String, Integer>> categories) {
+        ShiftValueSectionedRecyclerViewAdapter.Section[] sections =
+                new ShiftValueSectionedRecyclerViewAdapter.Section[categories.size()];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new ShiftValueSectionedRecyclerViewAdapter.Section(categories.get(i).first,
+                    categories.get(i).second);
+        }
+        return sections;
+    }
+
+    /**
+     * Filters the values in the background. Only the latest query's results are shown.
+     */
+    private void search(String query) {
+        if (mSearchTask != null) {
+            mSearchTask.cancel(false);
+        }
+        mSearchTask = new SearchTask();
+        mSearchTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, query);
+    }
+
+    private class SearchTask extends AsyncTask<String, Void, ShiftValueIndex.Snapshot> {
+
+        @Override
+        protected ShiftValueIndex.Snapshot doInBackground(String... query) {
+            return isCancelled() ? null : mRegistrationManager.search(query[0]);
+        }
+
+        @Override
+        protected void onPostExecute(final ShiftValueIndex.Snapshot results) {
+            /*
+                Categories start at positions in the filtered list, so they can only change once
+                the adapter shows it
+             */
+            mAdapter.setShiftValues(results.VALUES, new Runnable() {
+                @Override
+                public void run() {
+                    if (mRecyclerView != null) {
+                        setCategories(results.CATEGORIES);
+                    }
+                }
+            });
+        }
+    }
 }
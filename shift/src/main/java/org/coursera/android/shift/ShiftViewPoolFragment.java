@@ -0,0 +1,198 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+import androidx.fragment.app.FragmentManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless fragment keeping the values menu's row views for as long as its activity lives.
+ *
+ * Rows are returned to a shared {@link RecyclerView.RecycledViewPool} when the menu closes and
+ * reused the next time it opens. When {@link #warmUp()} is called, rows are also inflated with
+ * an {@link AsyncLayoutInflater} once the main thread is idle, so that the menu's first frame
+ * does not have to inflate them.
+ */
+public class ShiftViewPoolFragment extends Fragment {
+
+    private static final String TAG = "SHIFT_VIEW_POOL_TAG";
+    // About a screen of rows of each type
+    private static final int VIEWS_PER_TYPE = 8;
+    private static final int VIEW_TYPES = ShiftValueRecyclerViewAdapter.TYPE_STRING_SELECTOR + 1;
+
+    private final RecyclerView.RecycledViewPool mRecycledViewPool = new RecyclerView.RecycledViewPool();
+    // Which kind of menu the pooled rows were created for, see ShiftManager#setStickyCategoryHeaders
+    private boolean mPoolHasStickyHeaders;
+
+    private final List<List<View>> mPreInflatedViews = new ArrayList<>(VIEW_TYPES);
+    private boolean mWarmUpRequested;
+    private boolean mWarmUpStarted;
+    private AsyncLayoutInflater mInflater;
+    // Only used so that inflated rows get RecyclerView layout params
+    private RecyclerView mInflationParent;
+    private int[] mViewsToInflate;
+
+    public ShiftViewPoolFragment() {
+        for (int i = 0; i < VIEW_TYPES; i++) {
+            mPreInflatedViews.add(new ArrayList<View>());
+        }
+        // Sectioned menus offset row types by one, see ShiftValueSectionedRecyclerViewAdapter
+        for (int i = 0; i <= VIEW_TYPES; i++) {
+            mRecycledViewPool.setMaxRecycledViews(i, VIEWS_PER_TYPE);
+        }
+    }
+
+    /**
+     * Returns the activity's ShiftViewPoolFragment, adding one if it has none yet
+     */
+    static ShiftViewPoolFragment get(FragmentActivity activity) {
+        FragmentManager manager = activity.getSupportFragmentManager();
+        ShiftViewPoolFragment fragment = (ShiftViewPoolFragment) manager.findFragmentByTag(TAG);
+        if (fragment == null) {
+            fragment = new ShiftViewPoolFragment();
+            manager.beginTransaction().add(fragment, TAG).commitAllowingStateLoss();
+        }
+        return fragment;
+    }
+
+    /**
+     * @param stickyHeaders Whether the menu draws its category headers as decorations
+     * @return The pool to share between the values menus opened in this activity
+     */
+    RecyclerView.RecycledViewPool getRecycledViewPool(boolean stickyHeaders) {
+        if (stickyHeaders != mPoolHasStickyHeaders) {
+            // View types mean different rows in each kind of menu
+            mRecycledViewPool.clear();
+            mPoolHasStickyHeaders = stickyHeaders;
+        }
+        return mRecycledViewPool;
+    }
+
+    /**
+     * @return A pre-inflated row view of the given type, or null if there are none left
+     */
+    View takePreInflatedView(int viewType) {
+        if (viewType < 0 || viewType >= VIEW_TYPES) {
+            return null;
+        }
+        List<View> views = mPreInflatedViews.get(viewType);
+        return views.isEmpty() ? null : views.remove(views.size() - 1);
+    }
+
+    /**
+     * Inflates rows for the values menu in the background the next time the main thread is idle.
+     * Only the first call has any effect.
+     */
+    void warmUp() {
+        mWarmUpRequested = true;
+        if (isAdded()) {
+            scheduleWarmUp();
+        }
+    }
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (mWarmUpRequested) {
+            scheduleWarmUp();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        mViewsToInflate = null;
+        for (List<View> views : mPreInflatedViews) {
+            views.clear();
+        }
+        mRecycledViewPool.clear();
+        super.onDestroy();
+    }
+
+    private void scheduleWarmUp() {
+        if (mWarmUpStarted) {
+            return;
+        }
+        mWarmUpStarted = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                startInflating();
+                return false;
+            }
+        });
+    }
+
+    private void startInflating() {
+        Context context = getActivity();
+        if (context == null) {
+            return;
+        }
+        // No more rows of a type than there are ShiftValues of that type
+        int[] viewsToInflate = new int[VIEW_TYPES];
+        ShiftValueRegistrationManagerImpl registrationManager =
+                ShiftManager.getInstance().getValueRegistrationManager();
+        for (ShiftValue value : registrationManager.getShiftValues()) {
+            int viewType = ShiftValueRecyclerViewAdapter.getViewType(registrationManager.getPref(value));
+            viewsToInflate[viewType] = Math.min(viewsToInflate[viewType] + 1, VIEWS_PER_TYPE);
+        }
+        mViewsToInflate = viewsToInflate;
+        mInflater = new AsyncLayoutInflater(context);
+        mInflationParent = new RecyclerView(context);
+        mInflationParent.setLayoutManager(new LinearLayoutManager(context));
+        inflateNext();
+    }
+
+    /*
+        Rows are inflated one at a time. AsyncLayoutInflater's queue is bounded and blocks the
+        main thread when it is full.
+     */
+    private void inflateNext() {
+        int[] viewsToInflate = mViewsToInflate;
+        if (viewsToInflate == null) {
+            return;
+        }
+        for (int viewType = 0; viewType < viewsToInflate.length; viewType++) {
+            if (viewsToInflate[viewType] > 0) {
+                viewsToInflate[viewType]--;
+                final int type = viewType;
+                mInflater.inflate(ShiftValueRecyclerViewAdapter.getLayout(viewType), mInflationParent,
+                        new AsyncLayoutInflater.OnInflateFinishedListener() {
+                            @Override
+                            public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                                if (mViewsToInflate != null) {
+                                    mPreInflatedViews.get(type).add(view);
+                                    inflateNext();
+                                }
+                            }
+                        });
+                return;
+            }
+        }
+        mViewsToInflate = null;
+    }
+}
@@ -41,6 +41,16 @@ class StringListSelector {
         return list.get(selectedIndex);
     }
 
+    /**
+     * Returns a copy of this selector with a different selected index.
+     * The list is shared between both copies.
+     */
+    public StringListSelector withSelectedIndex(int index) {
+        StringListSelector selector = new StringListSelector(list, selectedIndex);
+        selector.setSelectedIndex(index);
+        return selector;
+    }
+
     public void setSelectedIndex(int index) {
         if(index > list.size() - 1) {
             throw new IllegalArgumentException("Given index exceeds array length");
@@ -52,4 +62,22 @@ class StringListSelector {
     public List<String> getList() {
         return list;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StringListSelector)) {
+            return false;
+        }
+        StringListSelector other = (StringListSelector) o;
+        return selectedIndex == other.selectedIndex
+                && (list == null ? other.list == null : list.equals(other.list));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (list == null ? 0 : list.hashCode()) + selectedIndex;
+    }
 }
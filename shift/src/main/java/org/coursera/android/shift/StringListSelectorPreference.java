@@ -16,24 +16,37 @@ package org.coursera.android.shift;
 class StringListSelectorPreference extends ShiftPref<StringListSelector> {
 
     public StringListSelectorPreference(ShiftPersistenceManager persistenceManager,
+                                        ShiftValueCache cache,
                                         String key,
                                         StringListSelector defaultValue) {
-        super(persistenceManager, key, defaultValue, StringListSelector.class);
+        super(persistenceManager, cache, key, defaultValue, StringListSelector.class);
     }
 
+    /**
+     * Returns the decoded selector kept in the {@link ShiftValueCache}.
+     * The instance is shared, so it must not be modified.
+     */
     @Override
     StringListSelector getValue() {
-        return PERSISTENCE.getObject(KEY, StringListSelector.class, DEFAULT_VALUE);
+        return (StringListSelector) CACHE.getObject(SLOT);
     }
 
     @Override
-    void setValue(StringListSelector value) {
-        PERSISTENCE.putObject(KEY, value);
+    void put(ShiftStore.Editor editor, StringListSelector value) {
+        PERSISTENCE.putObject(editor, KEY, value);
+    }
+
+    @Override
+    void cache(StringListSelector value) {
+        CACHE.setObject(SLOT, value);
+    }
+
+    @Override
+    void load() {
+        CACHE.setObject(SLOT, PERSISTENCE.getObject(KEY, StringListSelector.class, DEFAULT_VALUE));
     }
 
     void setSelectedIndex(int index) {
-        StringListSelector newValue = PERSISTENCE.getObject(KEY, StringListSelector.class, DEFAULT_VALUE);
-        newValue.setSelectedIndex(index);
-        PERSISTENCE.putObject(KEY, newValue);
+        setValue(getValue().withSelectedIndex(index));
     }
 }
@@ -0,0 +1,82 @@
+/*
+ Copyright 2015 Coursera Inc.
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+     http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.coursera.android.shift;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Reads and writes {@link StringListSelector} without reflection.
+ * Uses the same field names Gson's reflective adapter used so values persisted by older
+ * versions of Shift can still be read.
+ */
+class StringListSelectorTypeAdapter extends TypeAdapter<StringListSelector> {
+
+    private static final String FIELD_LIST = "list";
+    private static final String FIELD_SELECTED_INDEX = "selectedIndex";
+
+    @Override
+    public void write(JsonWriter out, StringListSelector value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(FIELD_LIST);
+        out.beginArray();
+        for (String item : value.list) {
+            out.value(item);
+        }
+        out.endArray();
+        out.name(FIELD_SELECTED_INDEX).value(value.selectedIndex);
+        out.endObject();
+    }
+
+    @Override
+    public StringListSelector read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ArrayList<String> list = new ArrayList<>();
+        int selectedIndex = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (FIELD_LIST.equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        list.add(null);
+                    } else {
+                        list.add(in.nextString());
+                    }
+                }
+                in.endArray();
+            } else if (FIELD_SELECTED_INDEX.equals(name) && in.peek() == JsonToken.NUMBER) {
+                selectedIndex = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new StringListSelector(list, selectedIndex);
+    }
+}
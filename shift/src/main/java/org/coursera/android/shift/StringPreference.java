@@ -15,17 +15,30 @@ package org.coursera.android.shift;
 
 class StringPreference extends ShiftPref<String> {
 
-    public StringPreference(ShiftPersistenceManager persistenceManager, String key, String defaultValue) {
-        super(persistenceManager, key, defaultValue, String.class);
+    public StringPreference(ShiftPersistenceManager persistenceManager,
+                            ShiftValueCache cache,
+                            String key,
+                            String defaultValue) {
+        super(persistenceManager, cache, key, defaultValue, String.class);
     }
 
     @Override
     public String getValue() {
-        return PERSISTENCE.getString(KEY, DEFAULT_VALUE);
+        return (String) CACHE.getObject(SLOT);
     }
 
     @Override
-    public void setValue(String value) {
-        PERSISTENCE.putString(KEY, value);
+    void put(ShiftStore.Editor editor, String value) {
+        editor.putString(KEY, value);
+    }
+
+    @Override
+    void cache(String value) {
+        CACHE.setObject(SLOT, value);
+    }
+
+    @Override
+    void load() {
+        CACHE.setObject(SLOT, PERSISTENCE.getString(KEY, DEFAULT_VALUE));
     }
 }
@@ -0,0 +1,90 @@
+package org.coursera.android.shift;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class DeferredShiftStoreTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("shift", ".store");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void testDefaultsUntilLoaded() {
+        MappedFileShiftStore saved = new MappedFileShiftStore(mFile);
+        saved.edit().putInt(new ShiftValue("Deferred", "Saved", "Shift", false).toString(), 5).apply();
+
+        DeferredShiftStore store = new DeferredShiftStore();
+        ShiftValueRegistrationManagerImpl registrationManager =
+                new ShiftValueRegistrationManagerImpl(new ShiftPersistenceManager(store));
+        ShiftValue savedValue = new ShiftValue("Deferred", "Saved", "Shift", false);
+        ShiftValue changedValue = new ShiftValue("Deferred", "Changed", "Shift", false);
+        ShiftValue untouchedValue = new ShiftValue("Deferred", "Untouched", "Shift", false);
+        registrationManager.register(savedValue, 1);
+        registrationManager.register(changedValue, 1);
+        registrationManager.register(untouchedValue, 1);
+
+        // Served from defaults and from changes made before loading
+        Assert.assertEquals(1, registrationManager.getInt(savedValue));
+        ((IntPreference) registrationManager.getPref(changedValue, IntPreference.class, "int")).setValue(7);
+        Assert.assertEquals(7, registrationManager.getInt(changedValue));
+        Assert.assertFalse(saved.exists(changedValue.toString()));
+
+        store.setStore(saved);
+        List<ShiftValue> reloaded = registrationManager.reloadValues();
+
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertSame(savedValue, reloaded.get(0));
+        Assert.assertEquals(5, registrationManager.getInt(savedValue));
+        Assert.assertEquals(7, registrationManager.getInt(changedValue));
+        Assert.assertEquals(1, registrationManager.getInt(untouchedValue));
+        Assert.assertEquals(7, new MappedFileShiftStore(mFile).getInt(changedValue.toString(), 0));
+    }
+
+    @Test
+    public void testRemoveBeforeLoad() {
+        MappedFileShiftStore saved = new MappedFileShiftStore(mFile);
+        saved.edit().putString("string", "saved").apply();
+
+        DeferredShiftStore store = new DeferredShiftStore();
+        store.edit().putString("string", "pending").apply();
+        Assert.assertEquals("pending", store.getString("string", null));
+        store.edit().remove("string").apply();
+        Assert.assertFalse(store.exists("string"));
+
+        store.setStore(saved);
+        Assert.assertFalse(store.exists("string"));
+        Assert.assertFalse(saved.exists("string"));
+    }
+
+    @Test
+    public void testKeepsChangesInMemoryWhenStoreFailsToLoad() {
+        DeferredShiftStore store = new DeferredShiftStore();
+        store.edit().putInt("int", 3).apply();
+
+        store.setStore(new MemoryShiftStore());
+        Assert.assertEquals(3, store.getInt("int", 0));
+        store.edit().putInt("int", 4).remove("other").apply();
+        Assert.assertEquals(4, store.getInt("int", 0));
+    }
+}
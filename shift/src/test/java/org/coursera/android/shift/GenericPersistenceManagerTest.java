@@ -7,6 +7,10 @@ import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
 @RunWith(RobolectricGradleTestRunner.class)
 @Config(constants = BuildConfig.class, sdk = 21)
 public class GenericPersistenceManagerTest {
@@ -42,5 +46,58 @@ public class GenericPersistenceManagerTest {
         Assert.assertEquals("private", test.getPrivateField());
         Assert.assertEquals("testField", test.getPublicField());
     }
-}
 
+    @Test
+    public void testStringListSelectorRoundTrip() {
+        ShiftPersistenceManager persistenceManager = new ShiftPersistenceManager(RuntimeEnvironment.application);
+        persistenceManager.putObject("selector", new StringListSelector(new String[]{"a", "b", "c"}, 2));
+
+        StringListSelector selector = persistenceManager.getObject("selector", StringListSelector.class,
+                new StringListSelector());
+
+        Assert.assertEquals(3, selector.getList().size());
+        Assert.assertEquals("c", selector.getSelectedValue());
+    }
+
+    @Test
+    public void testStringListSelectorReadsReflectiveFormat() {
+        ShiftPersistenceManager persistenceManager = new ShiftPersistenceManager(RuntimeEnvironment.application);
+        // Format written by Gson's reflective adapter in earlier versions
+        persistenceManager.putString("legacySelector", "{\"list\":[\"x\",\"y\"],\"selectedIndex\":1}");
+
+        StringListSelector selector = persistenceManager.getObject("legacySelector", StringListSelector.class,
+                new StringListSelector());
+
+        Assert.assertEquals("y", selector.getSelectedValue());
+    }
+
+    @Test
+    public void testInvalidateDatabase() throws IOException {
+        File file = File.createTempFile("shift", ".store");
+        file.delete();
+        try {
+            MappedFileShiftStore store = new MappedFileShiftStore(file);
+            store.edit()
+                    .putBoolean("kept", true)
+                    .putString("stale string", "abcd")
+                    .putInt("stale int", 1)
+                    .apply();
+            ShiftPersistenceManager persistenceManager = new ShiftPersistenceManager(store);
+
+            ShiftPersistenceManager.InvalidationResult result =
+                    persistenceManager.invalidateDatabase(Collections.singleton("kept"));
+            Assert.assertEquals(2, result.KEYS_REMOVED);
+            Assert.assertEquals("stale string".length() + 4 + "stale int".length() + 4, result.BYTES_RECLAIMED);
+            Assert.assertTrue(store.exists("kept"));
+            Assert.assertFalse(store.exists("stale string"));
+            Assert.assertFalse(store.exists("stale int"));
+
+            // Only runs once per launch
+            Assert.assertFalse(persistenceManager.shouldInvalidate());
+            Assert.assertNull(persistenceManager.invalidateDatabase(Collections.<String>emptySet()));
+            Assert.assertTrue(store.exists("kept"));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.coursera.android.shift;
+
+import org.junit.After;
+import org.junit.Assert;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class JournalShiftStoreTest {
+
+    private static final int COMPACTION_THRESHOLD = 1024;
+    private static final int MAGIC = 0x53484a4c;
+    private static final int HEADER_SIZE = 8;
+
+    private File mFile;
+    private final List<Runnable> mWrites = new ArrayList<>();
+    private final Executor mExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mWrites.add(command);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("shift", ".journal");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + JournalShiftStore.UNRECOGNIZED_SUFFIX).delete();
+    }
+
+    private JournalShiftStore open() {
+        return new JournalShiftStore(mFile, null, COMPACTION_THRESHOLD, mExecutor);
+    }
+
+    private void finishWrites() {
+        while (!mWrites.isEmpty()) {
+            mWrites.remove(0).run();
+        }
+    }
+
+    @Test
+    public void testValuesSurviveReopen() {
+        JournalShiftStore store = open();
+        store.edit()
+                .putBoolean("boolean", true)
+                .putInt("int", 42)
+                .putFloat("float", 1.5f)
+                .putString("string", "value")
+                .apply();
+        store.edit().putString("removed", "value").apply();
+        store.edit().remove("removed").apply();
+
+        // Visible right away, written in the background
+        Assert.assertEquals(42, store.getInt("int", 0));
+        Assert.assertEquals(HEADER_SIZE, mFile.length());
+        finishWrites();
+
+        JournalShiftStore reopened = open();
+        Assert.assertTrue(reopened.getBoolean("boolean", false));
+        Assert.assertEquals(42, reopened.getInt("int", 0));
+        Assert.assertEquals(1.5f, reopened.getFloat("float", 0f), 0f);
+        Assert.assertEquals("value", reopened.getString("string", null));
+        Assert.assertFalse(reopened.exists("removed"));
+        Assert.assertEquals(4, reopened.getAll().size());
+    }
+
+    @Test
+    public void testTornBatchIsDropped() throws IOException {
+        JournalShiftStore store = open();
+        store.edit().putInt("int", 1).apply();
+        store.edit().putInt("int", 2).putString("string", "a value that will be cut short").apply();
+        finishWrites();
+
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(file.length() - 5);
+        file.close();
+
+        // Nothing from the torn batch is kept, not even the records that were complete
+        JournalShiftStore reopened = open();
+        Assert.assertEquals(1, reopened.getInt("int", 0));
+        Assert.assertFalse(reopened.exists("string"));
+        // New batches go after the last complete one
+        reopened.edit().putInt("int", 3).apply();
+        finishWrites();
+        Assert.assertEquals(3, open().getInt("int", 0));
+    }
+
+    @Test
+    public void testCompactionKeepsQueuedWrites() {
+        JournalShiftStore store = open();
+        for (int i = 0; i < 100; i++) {
+            store.edit().putString("string", "value " + i).putInt("int", i).apply();
+        }
+        // Already in memory when the compaction takes its snapshot, and written again after it
+        store.edit().putString("string", "latest").remove("int").putBoolean("boolean", true).apply();
+        finishWrites();
+
+        Assert.assertTrue(store.getLogSize() < COMPACTION_THRESHOLD);
+        Assert.assertEquals(store.getLogSize(), mFile.length());
+        store.edit().putFloat("float", 2f).apply();
+        finishWrites();
+
+        JournalShiftStore reopened = open();
+        Assert.assertEquals("latest", reopened.getString("string", null));
+        Assert.assertFalse(reopened.exists("int"));
+        Assert.assertTrue(reopened.getBoolean("boolean", false));
+        Assert.assertEquals(2f, reopened.getFloat("float", 0f), 0f);
+        Assert.assertEquals(3, reopened.getAll().size());
+    }
+
+    @Test
+    public void testUnrecognizedLogIsMovedAside() throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        out.writeInt(MAGIC);
+        out.writeInt(99);
+        out.writeUTF("written by a newer version");
+        out.close();
+        long length = mFile.length();
+
+        JournalShiftStore store = open();
+        Assert.assertTrue(store.getAll().isEmpty());
+        File unrecognized = new File(mFile.getPath() + JournalShiftStore.UNRECOGNIZED_SUFFIX);
+        Assert.assertEquals(length, unrecognized.length());
+        Assert.assertEquals(HEADER_SIZE, mFile.length());
+    }
+
+    @Test
+    public void testReadsUnbatchedLog() throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        out.writeInt(MAGIC);
+        out.writeInt(1);
+        out.writeByte(2);
+        out.writeUTF("int");
+        out.writeInt(5);
+        out.close();
+
+        JournalShiftStore store = open();
+        Assert.assertEquals(5, store.getInt("int", 0));
+        store.edit().putBoolean("boolean", true).apply();
+        finishWrites();
+
+        JournalShiftStore reopened = open();
+        Assert.assertEquals(5, reopened.getInt("int", 0));
+        Assert.assertTrue(reopened.getBoolean("boolean", false));
+    }
+
+    @Test
+    public void testImportsSharedPreferencesOnce() {
+        SharedPreferences sharedPreferences = RuntimeEnvironment.application.getSharedPreferences(
+                SharedPreferencesShiftStore.SHARED_PREF_KEY, Context.MODE_PRIVATE);
+        sharedPreferences.edit().putInt("int", 5).putString("string", "imported").commit();
+
+        JournalShiftStore store = new JournalShiftStore(mFile, RuntimeEnvironment.application,
+                COMPACTION_THRESHOLD, mExecutor);
+        finishWrites();
+        Assert.assertEquals(5, store.getInt("int", 0));
+        Assert.assertEquals("imported", store.getString("string", null));
+        Assert.assertTrue(sharedPreferences.getAll().isEmpty());
+
+        // A store created again doesn't get the old values back
+        mFile.delete();
+        JournalShiftStore recreated = new JournalShiftStore(mFile, RuntimeEnvironment.application,
+                COMPACTION_THRESHOLD, mExecutor);
+        finishWrites();
+        Assert.assertTrue(recreated.getAll().isEmpty());
+    }
+}
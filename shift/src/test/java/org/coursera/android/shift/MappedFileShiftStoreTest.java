@@ -0,0 +1,99 @@
+package org.coursera.android.shift;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MappedFileShiftStoreTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("shift", ".store");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + ".compact").delete();
+    }
+
+    @Test
+    public void testValuesSurviveReopen() {
+        MappedFileShiftStore store = new MappedFileShiftStore(mFile);
+        store.edit()
+                .putBoolean("boolean", true)
+                .putInt("int", 42)
+                .putFloat("float", 1.5f)
+                .putString("string", "value")
+                .apply();
+
+        MappedFileShiftStore reopened = new MappedFileShiftStore(mFile);
+        Assert.assertTrue(reopened.getBoolean("boolean", false));
+        Assert.assertEquals(42, reopened.getInt("int", 0));
+        Assert.assertEquals(1.5f, reopened.getFloat("float", 0f), 0f);
+        Assert.assertEquals("value", reopened.getString("string", null));
+        Assert.assertEquals(4, reopened.getAll().size());
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        MappedFileShiftStore store = new MappedFileShiftStore(mFile);
+        store.edit().putString("string", "short").putInt("int", 1).apply();
+        // Strings are appended as a new record, ints are rewritten in place
+        store.edit().putString("string", "a value that no longer fits in place").putInt("int", 2).apply();
+        store.edit().remove("int").apply();
+
+        MappedFileShiftStore reopened = new MappedFileShiftStore(mFile);
+        Assert.assertEquals("a value that no longer fits in place", reopened.getString("string", null));
+        Assert.assertFalse(reopened.exists("int"));
+        Assert.assertEquals(7, reopened.getInt("int", 7));
+    }
+
+    @Test
+    public void testGrowsAndCompacts() {
+        MappedFileShiftStore store = new MappedFileShiftStore(mFile);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            value.append('x');
+            store.edit().putString("string", value.toString()).putInt("key" + (i % 100), i).apply();
+        }
+
+        MappedFileShiftStore reopened = new MappedFileShiftStore(mFile);
+        Map<String, ?> all = reopened.getAll();
+        Assert.assertEquals(101, all.size());
+        Assert.assertEquals(value.toString(), reopened.getString("string", null));
+        Assert.assertEquals(1999, reopened.getInt("key99", 0));
+    }
+
+    @Test
+    public void testIgnoresUnfinishedCompaction() throws IOException {
+        MappedFileShiftStore store = new MappedFileShiftStore(mFile);
+        store.edit().putString("string", "value").apply();
+        File compacted = new File(mFile.getPath() + ".compact");
+        Assert.assertTrue(compacted.createNewFile());
+
+        MappedFileShiftStore reopened = new MappedFileShiftStore(mFile);
+        Assert.assertFalse(compacted.exists());
+        Assert.assertEquals("value", reopened.getString("string", null));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testWrongType() {
+        MappedFileShiftStore store = new MappedFileShiftStore(mFile);
+        store.edit().putInt("int", 1).apply();
+        store.getString("int", null);
+    }
+}
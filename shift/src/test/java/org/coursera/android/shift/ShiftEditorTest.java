@@ -0,0 +1,84 @@
+package org.coursera.android.shift;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftEditorTest {
+
+    private static int sNextId;
+
+    private final List<List<ShiftValue>> mBatches = new ArrayList<>();
+    private final List<ShiftValue> mSingleUpdates = new ArrayList<>();
+
+    private final ShiftValueBatchListener mListener = new ShiftValueBatchListener() {
+        @Override
+        public void onShiftValuesUpdated(List<ShiftValue> shiftValues) {
+            mBatches.add(shiftValues);
+        }
+
+        @Override
+        public void onShiftValuesUpdated(ShiftValue shiftValue) {
+            mSingleUpdates.add(shiftValue);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        ShiftManager.initialize(RuntimeEnvironment.application,
+                new SimpleVisibilityClient(RuntimeEnvironment.application, true));
+    }
+
+    private String nextFeature() {
+        return "Feature " + sNextId++;
+    }
+
+    @Test
+    public void testCommitNotifiesOnce() {
+        ShiftBoolean flag = new ShiftBoolean("Editor", nextFeature(), "Shift", false, false);
+        ShiftInteger count = new ShiftInteger("Editor", nextFeature(), "Shift", false, 1);
+        ShiftString name = new ShiftString("Editor", nextFeature(), "Shift", false, "a");
+        ShiftManager.getInstance().subscribeToUpdatesForAllShiftValues(mListener);
+        try {
+            ShiftManager.getInstance().edit()
+                    .set(flag, true)
+                    .set(count, 2)
+                    .set(count, 3)
+                    // Unchanged, so it is not reported
+                    .set(name, "a")
+                    .commit();
+        } finally {
+            ShiftManager.getInstance().unsubscribeToUpdatesForAllShiftValues(mListener);
+        }
+
+        Assert.assertTrue(flag.getBooleanValue());
+        Assert.assertEquals(3, count.getIntValue());
+        Assert.assertEquals(3, ShiftManager.getInstance().getPersistenceManager().getInt(count.toString(), 0));
+        Assert.assertEquals(1, mBatches.size());
+        Assert.assertEquals(2, mBatches.get(0).size());
+        Assert.assertTrue(mBatches.get(0).contains(flag));
+        Assert.assertTrue(mBatches.get(0).contains(count));
+        Assert.assertTrue(mSingleUpdates.isEmpty());
+    }
+
+    @Test
+    public void testEmptyCommitDoesNotNotify() {
+        ShiftFloat ratio = new ShiftFloat("Editor", nextFeature(), "Shift", false, 0.5f);
+        ShiftManager.getInstance().subscribeToUpdatesForAllShiftValues(mListener);
+        try {
+            ShiftManager.getInstance().edit().set(ratio, 0.5f).commit();
+        } finally {
+            ShiftManager.getInstance().unsubscribeToUpdatesForAllShiftValues(mListener);
+        }
+        Assert.assertTrue(mBatches.isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package org.coursera.android.shift;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftObservableTest {
+
+    private static int sNextId;
+
+    @Before
+    public void setUp() {
+        ShiftManager.initialize(RuntimeEnvironment.application,
+                new SimpleVisibilityClient(RuntimeEnvironment.application, true));
+    }
+
+    private String nextFeature() {
+        return "Feature " + sNextId++;
+    }
+
+    private static <T> ShiftObservable.Observer<T> record(final List<T> values) {
+        return new ShiftObservable.Observer<T>() {
+            @Override
+            public void onChanged(T value) {
+                values.add(value);
+            }
+        };
+    }
+
+    @Test
+    public void testOnlyReportsChanges() {
+        ShiftStringArraySelector selector = new ShiftStringArraySelector("Observable", nextFeature(),
+                "Shift", new String[]{"a", "b"}, 0, false);
+        List<String> values = new ArrayList<>();
+        ShiftObservable.Subscription subscription = selector.observe().subscribe(record(values));
+        Assert.assertEquals(Arrays.asList("a"), values);
+
+        // Selecting the selected item again
+        ShiftManager.getInstance().notifyShiftListeners(selector);
+        Assert.assertEquals(Arrays.asList("a"), values);
+
+        ShiftManager.getInstance().getValueRegistrationManager().getStringArraySelectorPreference(selector)
+                .setSelectedIndex(1);
+        ShiftManager.getInstance().notifyShiftListeners(selector);
+        Assert.assertEquals(Arrays.asList("a", "b"), values);
+
+        subscription.unsubscribe();
+        ShiftManager.getInstance().edit().setSelectedIndex(selector, 0).commit();
+        Assert.assertEquals(Arrays.asList("a", "b"), values);
+    }
+
+    @Test
+    public void testConflatesPostedChanges() {
+        ShiftInteger count = new ShiftInteger("Observable", nextFeature(), "Shift", false, 0);
+        List<Integer> values = new ArrayList<>();
+        ShiftObservable.Subscription subscription =
+                count.observe().subscribe(record(values), ShiftDispatchMode.MAIN_THREAD);
+        // Even the current value is given on the main thread
+        Assert.assertTrue(values.isEmpty());
+        ShadowLooper.idleMainLooper(0);
+        Assert.assertEquals(Arrays.asList(0), values);
+
+        for (int i = 1; i <= 5; i++) {
+            ShiftManager.getInstance().edit().set(count, i).commit();
+        }
+        Assert.assertEquals(Arrays.asList(0), values);
+        ShadowLooper.idleMainLooper(0);
+        Assert.assertEquals(Arrays.asList(0, 5), values);
+
+        // Changed and changed back before the observer was called
+        ShiftManager.getInstance().edit().set(count, 6).commit();
+        ShiftManager.getInstance().edit().set(count, 5).commit();
+        ShadowLooper.idleMainLooper(0);
+        Assert.assertEquals(Arrays.asList(0, 5), values);
+        subscription.unsubscribe();
+    }
+}
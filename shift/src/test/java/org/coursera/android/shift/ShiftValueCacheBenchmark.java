@@ -0,0 +1,62 @@
+package org.coursera.android.shift;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Not part of the unit tests, remove the {@link Ignore} to run it by hand.
+ */
+@Ignore("Benchmark")
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueCacheBenchmark {
+
+    private static final int WARM_UP_READS = 100000;
+    private static final int BENCHMARK_READS = 2000000;
+
+    /**
+     * Compares reading a boolean straight from SharedPreferences (what every
+     * {@link ShiftBoolean#getBooleanValue()} used to do) with reading it through the
+     * registration manager's cache.
+     */
+    @Test
+    public void benchmarkBooleanReads() {
+        ShiftPersistenceManager persistenceManager = new ShiftPersistenceManager(RuntimeEnvironment.application);
+        ShiftValueRegistrationManagerImpl registrationManager =
+                new ShiftValueRegistrationManagerImpl(persistenceManager);
+        ShiftValue flag = new ShiftValue("Cache", "Benchmark", "Shift", false);
+        registrationManager.register(flag, true);
+        String key = flag.toString();
+
+        boolean sink = false;
+        for (int i = 0; i < WARM_UP_READS; i++) {
+            sink ^= persistenceManager.getBoolean(key, false);
+            sink ^= registrationManager.getBool(flag);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_READS; i++) {
+            sink ^= persistenceManager.getBoolean(key, false);
+        }
+        long uncachedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_READS; i++) {
+            sink ^= registrationManager.getBool(flag);
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        System.out.println("SharedPreferences reads/sec: " + readsPerSecond(uncachedNanos)
+                + ", cached reads/sec: " + readsPerSecond(cachedNanos) + " (" + sink + ")");
+        Assert.assertTrue(registrationManager.getBool(flag));
+    }
+
+    private static long readsPerSecond(long nanos) {
+        return nanos == 0 ? Long.MAX_VALUE : BENCHMARK_READS * 1000000000L / nanos;
+    }
+}
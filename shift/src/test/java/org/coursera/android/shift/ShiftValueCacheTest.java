@@ -0,0 +1,31 @@
+package org.coursera.android.shift;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueCacheTest {
+
+    @Test
+    public void testWriteThrough() {
+        ShiftPersistenceManager persistenceManager = new ShiftPersistenceManager(RuntimeEnvironment.application);
+        ShiftValueCache cache = new ShiftValueCache();
+        BooleanPreference pref = new BooleanPreference(persistenceManager, cache, "writeThrough", false);
+
+        Assert.assertFalse(pref.getBooleanValue());
+        pref.setValue(true);
+        Assert.assertTrue(pref.getBooleanValue());
+        Assert.assertTrue(persistenceManager.getBoolean("writeThrough", false));
+
+        // Changes made behind the cache's back are only picked up when the value is reloaded
+        persistenceManager.putBoolean("writeThrough", false);
+        Assert.assertTrue(pref.getBooleanValue());
+        pref.load();
+        Assert.assertFalse(pref.getBooleanValue());
+    }
+}
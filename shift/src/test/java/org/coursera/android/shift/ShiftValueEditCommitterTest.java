@@ -0,0 +1,87 @@
+package org.coursera.android.shift;
+
+import android.os.Handler;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueEditCommitterTest {
+
+    private static final long DELAY = 300;
+
+    private static Runnable record(final List<String> commits, final String value) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                commits.add(value);
+            }
+        };
+    }
+
+    @Test
+    public void testCoalescesUntilIdle() {
+        ShiftValueEditCommitter committer = new ShiftValueEditCommitter(new Handler(), DELAY);
+        ShiftValue key = new ShiftValue("Category", "Url", "Shift", false);
+        List<String> commits = new ArrayList<>();
+
+        String typed = "";
+        for (char c : "https://example.org".toCharArray()) {
+            typed += c;
+            committer.post(key, typed, record(commits, typed));
+            ShadowLooper.idleMainLooper(DELAY - 1);
+        }
+        Assert.assertTrue(commits.isEmpty());
+        Assert.assertTrue(committer.isPending(key));
+
+        ShadowLooper.idleMainLooper(1);
+        Assert.assertEquals(1, commits.size());
+        Assert.assertEquals("https://example.org", commits.get(0));
+        Assert.assertFalse(committer.isPending(key));
+    }
+
+    @Test
+    public void testDebouncesPerValue() {
+        ShiftValueEditCommitter committer = new ShiftValueEditCommitter(new Handler(), DELAY);
+        ShiftValue first = new ShiftValue("Category", "First", "Shift", false);
+        ShiftValue second = new ShiftValue("Category", "Second", "Shift", false);
+        List<String> commits = new ArrayList<>();
+
+        committer.post(first, "first", record(commits, "first"));
+        ShadowLooper.idleMainLooper(DELAY / 2);
+        committer.post(second, "second", record(commits, "second"));
+        ShadowLooper.idleMainLooper(DELAY / 2);
+        Assert.assertEquals(1, commits.size());
+        Assert.assertEquals("first", commits.get(0));
+
+        ShadowLooper.idleMainLooper(DELAY / 2);
+        Assert.assertEquals(2, commits.size());
+        Assert.assertEquals("second", commits.get(1));
+    }
+
+    @Test
+    public void testFlush() {
+        ShiftValueEditCommitter committer = new ShiftValueEditCommitter(new Handler(), DELAY);
+        ShiftValue key = new ShiftValue("Category", "Feature", "Shift", false);
+        List<String> commits = new ArrayList<>();
+
+        committer.post(key, "a", record(commits, "a"));
+        committer.post(key, "ab", record(commits, "ab"));
+        committer.flush(key);
+        Assert.assertEquals(1, commits.size());
+        Assert.assertEquals("ab", commits.get(0));
+
+        // Nothing is left to commit once the delay passes
+        ShadowLooper.idleMainLooper(DELAY);
+        committer.flush(key);
+        Assert.assertEquals(1, commits.size());
+    }
+}
@@ -0,0 +1,68 @@
+package org.coursera.android.shift;
+
+import androidx.core.util.Pair;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueIndexTest {
+
+    @Test
+    public void testMatchesSortedOrder() {
+        List<ShiftValue> values = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            values.add(new ShiftValue("Category " + (i % 37), "Feature " + i, "Shift", false));
+        }
+        Collections.shuffle(values, new Random(42));
+
+        ShiftValueIndex index = new ShiftValueIndex();
+        for (ShiftValue value : values) {
+            index.add(value);
+        }
+        ShiftValueIndex.Snapshot snapshot = index.snapshot();
+
+        List<ShiftValue> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        Assert.assertEquals(sorted, snapshot.VALUES);
+
+        Assert.assertEquals(37, snapshot.CATEGORIES.size());
+        String previous = null;
+        for (Pair<String, Integer> category : snapshot.CATEGORIES) {
+            int start = category.second;
+            Assert.assertEquals(category.first, sorted.get(start).CATEGORY);
+            if (start > 0) {
+                Assert.assertFalse(category.first.equals(sorted.get(start - 1).CATEGORY));
+            }
+            if (previous != null) {
+                Assert.assertTrue(previous.compareTo(category.first) < 0);
+            }
+            previous = category.first;
+        }
+    }
+
+    @Test
+    public void testSnapshotReusedUntilRegistration() {
+        ShiftValueIndex index = new ShiftValueIndex();
+        index.add(new ShiftValue("B", "Feature", "Shift", false));
+        ShiftValueIndex.Snapshot snapshot = index.snapshot();
+        Assert.assertSame(snapshot, index.snapshot());
+
+        index.add(new ShiftValue("A", "Feature", "Shift", false));
+        ShiftValueIndex.Snapshot updated = index.snapshot();
+        Assert.assertNotSame(snapshot, updated);
+        Assert.assertEquals(1, snapshot.VALUES.size());
+        Assert.assertEquals(2, updated.VALUES.size());
+        Assert.assertEquals("A", updated.CATEGORIES.get(0).first);
+        Assert.assertEquals(1, (int) updated.CATEGORIES.get(1).second);
+    }
+}
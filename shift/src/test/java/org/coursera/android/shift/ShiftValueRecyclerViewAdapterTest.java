@@ -0,0 +1,77 @@
+package org.coursera.android.shift;
+
+import android.widget.FrameLayout;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueRecyclerViewAdapterTest {
+
+    private static final long DELAY = 300;
+
+    private ShiftValueRegistrationManagerImpl mRegistrationManager;
+    private ShiftValue mUrl;
+    private ShiftValueRecyclerViewAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        ShiftManager.initialize(RuntimeEnvironment.application,
+                new SimpleVisibilityClient(RuntimeEnvironment.application, true));
+        mRegistrationManager = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        mUrl = new ShiftValue("Adapter", "Url", "Shift", false);
+        mRegistrationManager.register(mUrl, "https://example.com");
+        mAdapter = new ShiftValueRecyclerViewAdapter(RuntimeEnvironment.application,
+                mRegistrationManager.getShiftValues(), mRegistrationManager, DELAY);
+    }
+
+    private ShiftValueRecyclerViewAdapter.ShiftValueViewHolder createStringRow() {
+        ShiftValueRecyclerViewAdapter.ShiftValueViewHolder holder = mAdapter.onCreateViewHolder(
+                new FrameLayout(RuntimeEnvironment.application), ShiftValueRecyclerViewAdapter.TYPE_STRING);
+        mAdapter.onBindViewHolder(holder, 0);
+        return holder;
+    }
+
+    /**
+     * Types into the row as the user would. The row is not attached to a RecyclerView, so
+     * the edit is reported to the adapter here rather than by the row's TextWatcher.
+     */
+    private void type(ShiftValueRecyclerViewAdapter.ShiftValueViewHolder holder, String text, int cursor) {
+        holder.editString.setText(text);
+        holder.editString.setSelection(cursor);
+        mAdapter.onTextEdited(0, text);
+    }
+
+    @Test
+    public void testRebindKeepsEditInProgress() {
+        ShiftValueRecyclerViewAdapter.ShiftValueViewHolder holder = createStringRow();
+        type(holder, "https://example.org", 16);
+
+        mAdapter.onBindViewHolder(holder, 0);
+        Assert.assertEquals("https://example.com", mRegistrationManager.getPref(mUrl).getValue());
+        Assert.assertEquals("https://example.org", holder.editString.getText().toString());
+        Assert.assertEquals(16, holder.editString.getSelectionStart());
+
+        // The edit is still saved once the row has been idle
+        ShadowLooper.idleMainLooper(DELAY);
+        Assert.assertEquals("https://example.org", mRegistrationManager.getPref(mUrl).getValue());
+    }
+
+    @Test
+    public void testBindingAnotherRowCommitsEdit() {
+        ShiftValueRecyclerViewAdapter.ShiftValueViewHolder holder = createStringRow();
+        type(holder, "https://example.org", 16);
+
+        ShiftValueRecyclerViewAdapter.ShiftValueViewHolder other = createStringRow();
+        Assert.assertEquals("https://example.org", mRegistrationManager.getPref(mUrl).getValue());
+        Assert.assertEquals("https://example.org", other.editString.getText().toString());
+    }
+}
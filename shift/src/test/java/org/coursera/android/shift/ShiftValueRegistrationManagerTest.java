@@ -0,0 +1,106 @@
+package org.coursera.android.shift;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueRegistrationManagerTest {
+
+    @Test
+    public void testDenseSlots() {
+        ShiftValueRegistrationManagerImpl registrationManager = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        ShiftValue[] values = new ShiftValue[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new ShiftValue("Slots", "Value " + i, "Shift", false);
+            registrationManager.register(values[i], i);
+        }
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(i, values[i].mSlot);
+            Assert.assertEquals(i, registrationManager.getInt(values[i]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterTwice() {
+        ShiftValueRegistrationManagerImpl registrationManager = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        ShiftValue value = new ShiftValue("Slots", "Twice", "Shift", false);
+        registrationManager.register(value, true);
+        registrationManager.register(value, 1);
+    }
+
+    @Test
+    public void testRegisterWithTwoManagers() {
+        ShiftValueRegistrationManagerImpl first = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        ShiftValueRegistrationManagerImpl second = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        ShiftValue other = new ShiftValue("Managers", "Other", "Shift", false);
+        ShiftValue shared = new ShiftValue("Managers", "Shared", "Shift", false);
+        second.register(other, 2);
+        first.register(shared, 1);
+        second.register(shared, 3);
+
+        Assert.assertEquals(0, first.getSlot(shared));
+        Assert.assertEquals(1, second.getSlot(shared));
+        Assert.assertEquals(1, first.getInt(shared));
+        Assert.assertEquals(3, second.getInt(shared));
+        Assert.assertEquals(2, second.getInt(other));
+        Assert.assertEquals(ShiftValueCache.NO_SLOT, first.getSlot(other));
+        Assert.assertEquals(1, second.search("shared").VALUES.size());
+        Assert.assertSame(shared, second.search("shared").VALUES.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterTwiceWithSecondManager() {
+        ShiftValueRegistrationManagerImpl first = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        ShiftValueRegistrationManagerImpl second = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        ShiftValue value = new ShiftValue("Managers", "Twice", "Shift", false);
+        first.register(value, 1);
+        second.register(value, 1);
+        second.register(value, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongType() {
+        ShiftValueRegistrationManagerImpl registrationManager = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        ShiftValue value = new ShiftValue("Slots", "Wrong Type", "Shift", false);
+        registrationManager.register(value, true);
+        registrationManager.getInt(value);
+    }
+
+    @Test
+    public void testRegistrationOnlyReads() throws IOException {
+        File file = File.createTempFile("shift", ".journal");
+        file.delete();
+        try {
+            JournalShiftStore store = new JournalShiftStore(file);
+            long emptySize = store.getLogSize();
+            ShiftValueRegistrationManagerImpl registrationManager = new ShiftValueRegistrationManagerImpl(
+                    new ShiftPersistenceManager(store));
+            ShiftValue[] values = new ShiftValue[100];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = new ShiftValue("Defaults", "Value " + i, "Shift", false);
+                registrationManager.register(values[i], i);
+            }
+            // Defaults are not saved, only values that have been changed
+            Assert.assertEquals(emptySize, store.getLogSize());
+            Assert.assertTrue(store.getAll().isEmpty());
+            Assert.assertEquals(42, registrationManager.getInt(values[42]));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.coursera.android.shift;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Not part of the unit tests, remove the {@link Ignore} to run it by hand.
+ */
+@Ignore("Benchmark")
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueSearchIndexBenchmark {
+
+    private static final int VALUES = 10000;
+    private static final int CATEGORIES = 300;
+    private static final int BENCHMARK_PASSES = 20;
+
+    /**
+     * Reports the average time to match one keystroke of a query against 10,000 values
+     */
+    @Test
+    public void benchmarkSearch() {
+        ShiftValueRegistrationManagerImpl registrationManager = ShiftValueSearchIndexTest.newRegistrationManager();
+        for (int i = 0; i < VALUES; i++) {
+            registrationManager.register(new ShiftValue("Category " + (i % CATEGORIES),
+                    "Feature " + i + " enabled", "Author " + (i % 17), false), i % 2 == 0);
+        }
+
+        String query = "feature 12 author 3";
+        long searchNanos = 0;
+        int searches = 0;
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (int length = 1; length <= query.length(); length++) {
+                long start = System.nanoTime();
+                registrationManager.search(query.substring(0, length));
+                // The first pass only warms up
+                if (pass > 0) {
+                    searchNanos += System.nanoTime() - start;
+                    searches++;
+                }
+            }
+        }
+        System.out.println("Average search over " + VALUES + " values: " + (searchNanos / searches) + "ns");
+    }
+}
@@ -0,0 +1,65 @@
+package org.coursera.android.shift;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueSearchIndexTest {
+
+    static ShiftValueRegistrationManagerImpl newRegistrationManager() {
+        return new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void testSplit() {
+        Assert.assertEquals(Arrays.asList("new", "home", "screen", "v2"),
+                ShiftValueSearchIndex.split("  New home-screen (V2)"));
+        Assert.assertTrue(ShiftValueSearchIndex.split(" - ").isEmpty());
+    }
+
+    @Test
+    public void testSearch() {
+        ShiftValueRegistrationManagerImpl registrationManager = newRegistrationManager();
+        ShiftValue homeScreen = new ShiftValue("Home", "New Home Screen", "Alice", false);
+        ShiftValue welcome = new ShiftValue("Home", "Welcome Message", "Bob", false);
+        ShiftValue endpoint = new ShiftValue("Network", "API endpoint", "Alice", false);
+        registrationManager.register(homeScreen, false);
+        registrationManager.register(welcome, "Hello");
+        registrationManager.register(endpoint, "https://example.org");
+
+        Assert.assertEquals(Arrays.asList(homeScreen, welcome), registrationManager.search("hom").VALUES);
+        Assert.assertEquals(Arrays.asList(homeScreen, endpoint), registrationManager.search("ALICE").VALUES);
+        // Every word of the query has to match
+        Assert.assertEquals(Arrays.asList(homeScreen), registrationManager.search("alice scr").VALUES);
+        Assert.assertTrue(registrationManager.search("alice welcome").VALUES.isEmpty());
+        Assert.assertTrue(registrationManager.search("creen").VALUES.isEmpty());
+        // No words, no filtering
+        Assert.assertEquals(3, registrationManager.search(" ").VALUES.size());
+    }
+
+    @Test
+    public void testSearchKeepsCategories() {
+        ShiftValueRegistrationManagerImpl registrationManager = newRegistrationManager();
+        registrationManager.register(new ShiftValue("A", "Flag one", "Shift", false), true);
+        registrationManager.register(new ShiftValue("A", "Other", "Shift", false), true);
+        registrationManager.register(new ShiftValue("B", "Other", "Shift", false), true);
+        registrationManager.register(new ShiftValue("C", "Flag two", "Shift", false), true);
+        registrationManager.register(new ShiftValue("C", "Flag three", "Shift", false), true);
+
+        ShiftValueIndex.Snapshot results = registrationManager.search("flag");
+        Assert.assertEquals(3, results.VALUES.size());
+        Assert.assertEquals(2, results.CATEGORIES.size());
+        Assert.assertEquals("A", results.CATEGORIES.get(0).first);
+        Assert.assertEquals(0, (int) results.CATEGORIES.get(0).second);
+        Assert.assertEquals("C", results.CATEGORIES.get(1).first);
+        Assert.assertEquals(1, (int) results.CATEGORIES.get(1).second);
+    }
+}
@@ -0,0 +1,70 @@
+package org.coursera.android.shift;
+
+import android.widget.FrameLayout;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Not part of the unit tests, remove the {@link Ignore} to run it by hand.
+ */
+@Ignore("Benchmark")
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueSectionedRecyclerViewAdapterBenchmark {
+
+    private static final int BENCHMARK_PASSES = 5;
+
+    /**
+     * Binds every row of a menu with 5,000 values in 300 categories and reports the average
+     * time to look up the view type and bind one row.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void benchmarkBind() {
+        ShiftValueRegistrationManagerImpl registrationManager =
+                ShiftValueSectionedRecyclerViewAdapterTest.registerValues("Benchmark");
+        ShiftValueSectionedRecyclerViewAdapter adapter =
+                ShiftValueSectionedRecyclerViewAdapterTest.createAdapter(registrationManager);
+
+        FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+        // One holder per view type, the way a scrolling RecyclerView would recycle them
+        List<RecyclerView.ViewHolder> holders = new ArrayList<>();
+        for (int i = 0; i <= ShiftValueRecyclerViewAdapter.TYPE_STRING_SELECTOR + 1; i++) {
+            holders.add(null);
+        }
+
+        long bindNanos = 0;
+        int binds = 0;
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (int position = 0; position < adapter.getItemCount(); position++) {
+                long start = System.nanoTime();
+                int viewType = adapter.getItemViewType(position);
+                RecyclerView.ViewHolder holder = holders.get(viewType);
+                if (holder == null) {
+                    holder = adapter.onCreateViewHolder(parent, viewType);
+                    holders.set(viewType, holder);
+                    start = System.nanoTime();
+                }
+                adapter.onBindViewHolder(holder, position);
+                // The first pass only warms up
+                if (pass > 0) {
+                    bindNanos += System.nanoTime() - start;
+                    binds++;
+                }
+            }
+        }
+        System.out.println("Average bind over " + ShiftValueSectionedRecyclerViewAdapterTest.VALUES
+                + " values in " + ShiftValueSectionedRecyclerViewAdapterTest.CATEGORIES + " categories: "
+                + (bindNanos / binds) + "ns");
+    }
+}
@@ -0,0 +1,218 @@
+package org.coursera.android.shift;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.core.util.Pair;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueSectionedRecyclerViewAdapterTest {
+
+    static final int VALUES = 5000;
+    static final int CATEGORIES = 300;
+
+    static ShiftValueSectionedRecyclerViewAdapter createAdapter(ShiftValueRegistrationManagerImpl registrationManager) {
+        ShiftValueRecyclerViewAdapter baseAdapter = new ShiftValueRecyclerViewAdapter(
+                RuntimeEnvironment.application, registrationManager.getShiftValues(), registrationManager,
+                ShiftValueEditCommitter.DEFAULT_DELAY_MILLIS);
+        List<Pair<String, Integer>> categories = registrationManager.getCategories();
+        ShiftValueSectionedRecyclerViewAdapter.Section[] sections =
+                new ShiftValueSectionedRecyclerViewAdapter.Section[categories.size()];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new ShiftValueSectionedRecyclerViewAdapter.Section(
+                    categories.get(i).first, categories.get(i).second);
+        }
+        ShiftValueSectionedRecyclerViewAdapter adapter =
+                new ShiftValueSectionedRecyclerViewAdapter(RuntimeEnvironment.application, baseAdapter);
+        adapter.setSections(sections);
+        return adapter;
+    }
+
+    static ShiftValueRegistrationManagerImpl registerValues(String prefix) {
+        ShiftValueRegistrationManagerImpl registrationManager = new ShiftValueRegistrationManagerImpl(
+                new ShiftPersistenceManager(RuntimeEnvironment.application));
+        for (int i = 0; i < VALUES; i++) {
+            ShiftValue value = new ShiftValue(prefix + " Category " + (i % CATEGORIES),
+                    "Feature " + i, "Shift", false);
+            if (i % 3 == 0) {
+                registrationManager.register(value, i % 2 == 0);
+            } else if (i % 3 == 1) {
+                registrationManager.register(value, i);
+            } else {
+                registrationManager.register(value, "Value " + i);
+            }
+        }
+        return registrationManager;
+    }
+
+    @Test
+    public void testPositionMapping() {
+        ShiftValueRegistrationManagerImpl registrationManager = registerValues("Mapping");
+        List<Pair<String, Integer>> categories = registrationManager.getCategories();
+        ShiftValueSectionedRecyclerViewAdapter adapter = createAdapter(registrationManager);
+
+        Assert.assertEquals(VALUES + CATEGORIES, adapter.getItemCount());
+        int headers = 0;
+        int position = 0;
+        for (int sectionedPosition = 0; sectionedPosition < adapter.getItemCount(); sectionedPosition++) {
+            if (headers < CATEGORIES && categories.get(headers).second + headers == sectionedPosition) {
+                Assert.assertTrue(adapter.isSectionHeaderPosition(sectionedPosition));
+                Assert.assertEquals(RecyclerView.NO_POSITION, adapter.sectionedPositionToPosition(sectionedPosition));
+                headers++;
+            } else {
+                Assert.assertFalse(adapter.isSectionHeaderPosition(sectionedPosition));
+                Assert.assertEquals(position, adapter.sectionedPositionToPosition(sectionedPosition));
+                Assert.assertEquals(sectionedPosition, adapter.positionToSectionedPosition(position));
+                position++;
+            }
+        }
+        Assert.assertEquals(CATEGORIES, headers);
+        Assert.assertEquals(VALUES, position);
+    }
+
+    /**
+     * Stands in for the values adapter: rows are strings that start with their category, and a
+     * new list is applied the way DiffUtil would, with range removals and insertions
+     */
+    private static class FilteredAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        private static final List<String> ALL = Arrays.asList("a1", "a2", "b1", "b2", "c1", "c2");
+        private List<String> mRows = ALL;
+
+        void setRows(List<String> rows) {
+            List<String> current = new ArrayList<>(mRows);
+            for (int i = current.size() - 1; i >= 0; i--) {
+                if (!rows.contains(current.get(i))) {
+                    current.remove(i);
+                    mRows = new ArrayList<>(current);
+                    notifyItemRemoved(i);
+                }
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                if (i >= current.size() || !current.get(i).equals(rows.get(i))) {
+                    current.add(i, rows.get(i));
+                    mRows = new ArrayList<>(current);
+                    notifyItemInserted(i);
+                }
+            }
+        }
+
+        ShiftValueSectionedRecyclerViewAdapter.Section[] getSections() {
+            List<ShiftValueSectionedRecyclerViewAdapter.Section> sections = new ArrayList<>();
+            for (int i = 0; i < mRows.size(); i++) {
+                if (i == 0 || mRows.get(i).charAt(0) != mRows.get(i - 1).charAt(0)) {
+                    sections.add(new ShiftValueSectionedRecyclerViewAdapter.Section(
+                            mRows.get(i).substring(0, 1), i));
+                }
+            }
+            return sections.toArray(new ShiftValueSectionedRecyclerViewAdapter.Section[sections.size()]);
+        }
+
+        String getRow(int position) {
+            return mRows.get(position);
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return mRows.size();
+        }
+    }
+
+    /**
+     * Replays the notifications it gets on the rows they were sent for. Inserted rows are
+     * only known once the adapter is settled, so they are checked against it then.
+     */
+    private static class RowTracker extends RecyclerView.AdapterDataObserver {
+        private static final String INSERTED = "inserted";
+        final List<String> rows = new ArrayList<>();
+        boolean changed;
+
+        @Override
+        public void onChanged() {
+            changed = true;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            for (int i = 0; i < itemCount; i++) {
+                rows.add(positionStart, INSERTED);
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            for (int i = 0; i < itemCount; i++) {
+                rows.remove(positionStart);
+            }
+        }
+
+        void assertMatches(List<String> expected) {
+            Assert.assertEquals(expected.size(), rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i) != INSERTED) {
+                    Assert.assertEquals(expected.get(i), rows.get(i));
+                }
+            }
+            rows.clear();
+            rows.addAll(expected);
+        }
+    }
+
+    private static List<String> describe(ShiftValueSectionedRecyclerViewAdapter adapter, FilteredAdapter base) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < adapter.getItemCount(); i++) {
+            rows.add(adapter.isSectionHeaderPosition(i)
+                    ? "header" : base.getRow(adapter.sectionedPositionToPosition(i)));
+        }
+        return rows;
+    }
+
+    @Test
+    public void testFilterNotifiesRanges() {
+        FilteredAdapter base = new FilteredAdapter();
+        ShiftValueSectionedRecyclerViewAdapter adapter =
+                new ShiftValueSectionedRecyclerViewAdapter(RuntimeEnvironment.application, base);
+        adapter.setSections(base.getSections());
+        RowTracker tracker = new RowTracker();
+        tracker.rows.addAll(describe(adapter, base));
+        adapter.registerAdapterDataObserver(tracker);
+
+        List<List<String>> filters = Arrays.asList(
+                // The whole of category b goes, and with it its header
+                Arrays.asList("a1", "a2", "c1", "c2"),
+                Arrays.asList("a2", "c2"),
+                // Category b comes back between the others
+                Arrays.asList("a2", "b1", "b2", "c2"),
+                Arrays.<String>asList(),
+                FilteredAdapter.ALL);
+        for (List<String> filter : filters) {
+            // Sections follow once the rows are applied, as the values menu does
+            base.setRows(filter);
+            adapter.setSections(base.getSections());
+            tracker.assertMatches(describe(adapter, base));
+        }
+        Assert.assertFalse(tracker.changed);
+    }
+}
@@ -0,0 +1,321 @@
+package org.coursera.android.shift;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ShiftValueSubscriptionManagerTest {
+
+    private static final int THREADS = 4;
+    private static final int SUBSCRIPTIONS = 2000;
+
+    private static class CountingListener implements ShiftValueListener {
+        final AtomicInteger updates = new AtomicInteger();
+
+        @Override
+        public void onShiftValuesUpdated(ShiftValue shiftValue) {
+            updates.incrementAndGet();
+        }
+    }
+
+    private static class TestLifecycleOwner extends Lifecycle implements LifecycleOwner {
+        final List<LifecycleObserver> observers = new ArrayList<>();
+        State state = State.CREATED;
+
+        @Override
+        public Lifecycle getLifecycle() {
+            return this;
+        }
+
+        @Override
+        public void addObserver(LifecycleObserver observer) {
+            observers.add(observer);
+        }
+
+        @Override
+        public void removeObserver(LifecycleObserver observer) {
+            observers.remove(observer);
+        }
+
+        @Override
+        public State getCurrentState() {
+            return state;
+        }
+
+        void destroy() {
+            state = State.DESTROYED;
+            for (LifecycleObserver observer : new ArrayList<>(observers)) {
+                ((LifecycleEventObserver) observer).onStateChanged(this, Event.ON_DESTROY);
+            }
+        }
+    }
+
+    private static ShiftValueSubscriptionManagerImpl newSubscriptionManager() {
+        return new ShiftValueSubscriptionManagerImpl(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void testSubscribingTwiceNotifiesOnce() {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue value = new ShiftValue("Category", "Feature", "Shift", false);
+        CountingListener listener = new CountingListener();
+        subscriptionManager.subscribeToUpdatesForShiftValue(listener, value);
+        subscriptionManager.subscribeToUpdatesForShiftValue(listener, value);
+        subscriptionManager.subscribeToUpdatesForAllShiftValues(listener);
+        subscriptionManager.subscribeToUpdatesForAllShiftValues(listener);
+
+        subscriptionManager.notifyShiftListeners(value);
+        // Once for the value, once for all values
+        Assert.assertEquals(2, listener.updates.get());
+
+        subscriptionManager.unsubscribeToUpdatesForShiftValue(listener, value);
+        subscriptionManager.unsubscribeToUpdatesForAllShiftValues(listener);
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertEquals(2, listener.updates.get());
+    }
+
+    @Test
+    public void testUnsubscribeWhileNotifying() {
+        final ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        final ShiftValue value = new ShiftValue("Category", "Feature", "Shift", false);
+        final List<String> calls = new ArrayList<>();
+        ShiftValueListener first = new ShiftValueListener() {
+            @Override
+            public void onShiftValuesUpdated(ShiftValue shiftValue) {
+                calls.add("first");
+                subscriptionManager.unsubscribeToUpdatesForShiftValue(this, value);
+            }
+        };
+        ShiftValueListener second = new ShiftValueListener() {
+            @Override
+            public void onShiftValuesUpdated(ShiftValue shiftValue) {
+                calls.add("second");
+            }
+        };
+        subscriptionManager.subscribeToUpdatesForShiftValue(first, value);
+        subscriptionManager.subscribeToUpdatesForShiftValue(second, value);
+
+        subscriptionManager.notifyShiftListeners(value);
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertEquals(Arrays.asList("first", "second", "second"), calls);
+    }
+
+    @Test
+    public void testSubscribeFromOtherThreads() throws InterruptedException {
+        final ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        final ShiftValue value = new ShiftValue("Category", "Feature", "Shift", false);
+        final List<CountingListener> listeners = new ArrayList<>();
+        for (int i = 0; i < THREADS * SUBSCRIPTIONS; i++) {
+            listeners.add(new CountingListener());
+        }
+
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t * SUBSCRIPTIONS;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < offset + SUBSCRIPTIONS; i++) {
+                        subscriptionManager.subscribeToUpdatesForShiftValue(listeners.get(i), value);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        // Notifying while the other threads subscribe must not throw
+        boolean subscribing = true;
+        while (subscribing) {
+            subscriptionManager.notifyShiftListeners(value);
+            subscribing = false;
+            for (Thread thread : threads) {
+                subscribing |= thread.isAlive();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (CountingListener listener : listeners) {
+            listener.updates.set(0);
+        }
+        subscriptionManager.notifyShiftListeners(value);
+        for (CountingListener listener : listeners) {
+            Assert.assertEquals(1, listener.updates.get());
+        }
+    }
+
+    @Test
+    public void testMainThreadDispatchIsConflated() {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue value = new ShiftValue("Category", "Feature", "Shift", false);
+        CountingListener listener = new CountingListener();
+        subscriptionManager.subscribeToUpdatesForShiftValue(listener, value, ShiftDispatchMode.MAIN_THREAD);
+
+        for (int i = 0; i < 5; i++) {
+            subscriptionManager.notifyShiftListeners(value);
+        }
+        Assert.assertEquals(0, listener.updates.get());
+        ShadowLooper.idleMainLooper(0);
+        Assert.assertEquals(1, listener.updates.get());
+
+        // Pending calls are dropped once unsubscribed
+        subscriptionManager.notifyShiftListeners(value);
+        subscriptionManager.unsubscribeToUpdatesForShiftValue(listener, value);
+        ShadowLooper.idleMainLooper(0);
+        Assert.assertEquals(1, listener.updates.get());
+    }
+
+    @Test
+    public void testConflatedBatch() {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue first = new ShiftValue("Category", "First", "Shift", false);
+        ShiftValue second = new ShiftValue("Category", "Second", "Shift", false);
+        final List<List<ShiftValue>> batches = new ArrayList<>();
+        ShiftValueBatchListener listener = new ShiftValueBatchListener() {
+            @Override
+            public void onShiftValuesUpdated(List<ShiftValue> shiftValues) {
+                batches.add(shiftValues);
+            }
+
+            @Override
+            public void onShiftValuesUpdated(ShiftValue shiftValue) {
+                batches.add(Arrays.asList(shiftValue));
+            }
+        };
+        subscriptionManager.subscribeToUpdatesForAllShiftValues(listener, ShiftDispatchMode.MAIN_THREAD);
+
+        subscriptionManager.notifyShiftListeners(first);
+        subscriptionManager.notifyListeners(Arrays.asList(second, first));
+        ShadowLooper.idleMainLooper(0);
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(Arrays.asList(first, second), batches.get(0));
+    }
+
+    @Test
+    public void testBackgroundDispatch() throws InterruptedException {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue value = new ShiftValue("Category", "Feature", "Shift", false);
+        final CountDownLatch called = new CountDownLatch(1);
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        subscriptionManager.subscribeToUpdatesForShiftValue(new ShiftValueListener() {
+            @Override
+            public void onShiftValuesUpdated(ShiftValue shiftValue) {
+                thread.set(Thread.currentThread());
+                called.countDown();
+            }
+        }, value, ShiftDispatchMode.BACKGROUND);
+
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertTrue(called.await(5, TimeUnit.SECONDS));
+        Assert.assertNotSame(Thread.currentThread(), thread.get());
+    }
+
+    @Test
+    public void testWeakSubscriptionDoesNotRetainListener() {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue value = new ShiftValue("Category", "Feature", "Shift", false);
+        CountingListener listener = new CountingListener();
+        subscriptionManager.subscribeWeaklyToUpdatesForShiftValues(listener, new ShiftValue[]{value});
+        subscriptionManager.subscribeWeaklyToUpdatesForAllShiftValues(listener);
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertEquals(2, listener.updates.get());
+
+        Assert.assertEquals(1, subscriptionManager.getSubscriptionCount(value));
+        Assert.assertEquals(1, subscriptionManager.getSubscriptionCount(null));
+
+        WeakReference<CountingListener> reference = new WeakReference<>(listener);
+        listener = null;
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+        }
+        // The VM may ignore System.gc(), in which case there is nothing left to check
+        Assume.assumeTrue(reference.get() == null);
+        // Finds the collected listener and drops its subscriptions
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertEquals(0, subscriptionManager.getSubscriptionCount(value));
+        Assert.assertEquals(0, subscriptionManager.getSubscriptionCount(null));
+    }
+
+    @Test
+    public void testLifecycleSubscriptionEndsOnDestroy() {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue value = new ShiftValue("Category", "Feature", "Shift", false);
+        CountingListener listener = new CountingListener();
+        TestLifecycleOwner owner = new TestLifecycleOwner();
+        subscriptionManager.subscribeToUpdatesForShiftValues(owner, listener, new ShiftValue[]{value});
+        subscriptionManager.subscribeToUpdatesForAllShiftValues(owner, listener);
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertEquals(2, listener.updates.get());
+
+        owner.destroy();
+        Assert.assertTrue(owner.observers.isEmpty());
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertEquals(2, listener.updates.get());
+
+        // Nothing is subscribed for owners that are already destroyed
+        subscriptionManager.subscribeToUpdatesForAllShiftValues(owner, listener);
+        subscriptionManager.notifyShiftListeners(value);
+        Assert.assertEquals(2, listener.updates.get());
+    }
+
+    @Test
+    public void testCategorySubscriptions() {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue endpoint = new ShiftValue("Network", "Endpoint", "Shift", false);
+        ShiftValue timeout = new ShiftValue("Network/Timeouts", "Read timeout", "Shift", false);
+        ShiftValue welcome = new ShiftValue("Home", "Welcome", "Shift", false);
+        CountingListener network = new CountingListener();
+        CountingListener networkPrefix = new CountingListener();
+        subscriptionManager.subscribeToUpdatesForCategory(network, "Network");
+        subscriptionManager.subscribeToUpdatesForCategoryPrefix(networkPrefix, "Network");
+
+        subscriptionManager.notifyShiftListeners(endpoint);
+        subscriptionManager.notifyShiftListeners(timeout);
+        subscriptionManager.notifyShiftListeners(welcome);
+        Assert.assertEquals(1, network.updates.get());
+        Assert.assertEquals(2, networkPrefix.updates.get());
+
+        subscriptionManager.unsubscribeToUpdatesForCategory(network, "Network");
+        subscriptionManager.unsubscribeToUpdatesForCategoryPrefix(networkPrefix, "Network");
+        subscriptionManager.notifyShiftListeners(endpoint);
+        Assert.assertEquals(1, network.updates.get());
+        Assert.assertEquals(2, networkPrefix.updates.get());
+    }
+
+    @Test
+    public void testPrefixSubscribedAfterDispatch() {
+        ShiftValueSubscriptionManagerImpl subscriptionManager = newSubscriptionManager();
+        ShiftValue timeout = new ShiftValue("Network/Timeouts", "Read timeout", "Shift", false);
+        CountingListener first = new CountingListener();
+        CountingListener second = new CountingListener();
+        subscriptionManager.subscribeToUpdatesForCategoryPrefix(first, "Network/");
+        subscriptionManager.notifyShiftListeners(timeout);
+
+        // The category's prefixes were already looked up once
+        subscriptionManager.subscribeToUpdatesForCategoryPrefix(second, "Net");
+        subscriptionManager.notifyListeners(Arrays.asList(timeout));
+        Assert.assertEquals(2, first.updates.get());
+        Assert.assertEquals(1, second.updates.get());
+    }
+}